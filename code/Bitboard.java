@@ -0,0 +1,57 @@
+/**
+ * Bitboard is a fixed-size set of map cells packed into longs (64 cells per word),
+ * indexed the same way as MapLayout (row*cols+col).
+ * Membership tests and updates are single bit operations, so they are cheap enough to be used
+ * by bots evaluating thousands of positions.
+ */
+public final class Bitboard {
+
+  /** The number of cells in the set. */
+  public final int size;
+  private final long[] words;
+
+  /** Constructs an empty Bitboard holding the specified number of cells: */
+  public Bitboard(int size){
+    this.size = size;
+    this.words = new long[(size + 63) >>> 6];
+  }
+
+  /** Constructs a copy of another Bitboard: */
+  public Bitboard(Bitboard other){
+    this.size = other.size;
+    this.words = other.words.clone();
+  }
+
+  public boolean get(int cell){ return (words[cell >>> 6] & (1L << cell)) != 0; }
+  public void set(int cell){ words[cell >>> 6] |= 1L << cell; }
+  public void clear(int cell){ words[cell >>> 6] &= ~(1L << cell); }
+
+  /** Sets the cell if value is true, else clears it: */
+  public void set(int cell, boolean value){
+    if (value) set(cell);
+    else clear(cell);
+  }
+
+  /** Returns the number of cells in the set. */
+  public int cardinality(){
+    int count = 0;
+    for (long w : words) count += Long.bitCount(w);
+    return count;
+  }
+
+  /** Returns the first cell in the set at or after the specified cell, or -1 if there isn't one. */
+  public int nextSetBit(int from){
+    if (from >= size) return -1;
+    int i = from >>> 6;
+    long w = words[i] & (-1L << from);
+    while (true){
+      if (w != 0) return (i << 6) + Long.numberOfTrailingZeros(w);
+      if (++i == words.length) return -1;
+      w = words[i];
+    }
+  }
+
+  /** Returns the raw word holding cells 64*i to 64*i+63. */
+  public long word(int i){ return words[i]; }
+  public int wordCount(){ return words.length; }
+}
@@ -3,7 +3,11 @@ import java.awt.EventQueue;
 import java.awt.Graphics;
 import java.awt.Image;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.BiFunction;
 
 import javax.imageio.ImageIO;
 
@@ -11,11 +15,15 @@ import javax.imageio.ImageIO;
  * Board describes a board in the famous family game Murder Madness.
  * It is the main class of the game and contains all Squares, Players, and Cards,
  * along with managing the game state and turn loop.
+ *
+ * Each Board instance is one independent game, so many games can run at once
+ * (e.g. on separate threads) without sharing any mutable state.
  */
 public class Board {
-  
-  public static final GUI gui = new GUI();
-  /** Grid constants: */
+
+  /** The window displaying this game, or null if the game is headless. */
+  private final GUI gui;
+  /** Dimensions of the standard map: */
   public static final int ROWS = 24;
   public static final int COLS = 24;
 
@@ -23,49 +31,131 @@ public class Board {
   public static final String LINE = "----------------------------------------------------------------------|";
   public static final String MAP_BORDER = "|===============================================|";
 
+  /** The map the game is played on (the standard map unless another is set before the game starts): */
+  private MapLayout layout;
   /** Grid storing each of the boards Squares (by row then column): */
-  private static final Square[][] grid = new Square[ROWS][COLS];
+  private Square[][] grid;
+  /** Compact model of the grid that the Squares are views of, and a search engine for movement over it: */
+  private GridModel model;
+  private Reachability reachability;
+  /** Pathfinder for routes across the map, on large maps only (null on smaller ones): */
+  private ClusterPathfinder pathfinder;
+  /** Cells highlighted in the GUI as places the current Player can move to: */
+  private volatile int[] highlights = new int[0];
+
+  /** The deck the game is played with, which gives the number of players (the standard one unless another is set): */
+  private GameConfig config = GameConfig.standard();
+
+  /** Player fields, with a Player for each GameCharacter (indexed by GameCharacter.index): */
+  private Player[] players;
+  private int currentPlayerIndex; // index of player whose turn it is
+
+  /** Every Card in the game by id, with indices of their names: */
+  private CardRegistry registry;
+  /** Card Collections, keyed by symbol/initial: */
+  private final Map<Character, GameCharacter> characters = new HashMap<>();
+  private final Map<Character, Estate> estates = new HashMap<>();
+  private final Map<Character, Weapon> weapons = new HashMap<>();
 
-  /** Player fields: */
-  private static final Player[] players = new Player[4];
-  private static int currentPlayerIndex; // index of player whose turn it is
+  /** Game ending fields: */
+  private CardSet solution = CardSet.EMPTY;
+  /** Who holds each Card once they're dealt: */
+  private CardHolders holders;
+  /** The hash of the game's position, kept up to date once the game starts: */
+  private ZobristHash zobrist;
+  private boolean gameOver;
+
+  /** Turn counting fields, with maxTurns being 0 if there is no turn limit: */
+  private final int maxTurns;
+  private int turns;
+  /** The Player that solved the murder, or null if no one has (yet). */
+  private Player winner;
+
+  /** Recommends guesses to Computers and hints to people (null to have Computers guess at random): */
+  private GuessAdvisor advisor;
+  /** Creates the Players the computer plays, from their number and character (MctsComputers in interactive games): */
+  private BiFunction<Integer, GameCharacter, Player> computers;
+
+  /** Scanner for user input (null if the game is headless and played only by Computers): */
+  private final Scanner input;
+  /** Where game messages are printed: */
+  private final PrintStream out;
+  /** Source of all randomness in the game. Seeded so that any game can be replayed exactly. */
+  private final SplittableRandom random;
+  private final long seed;
+  /** The dice Players roll to move, and the map's TurnTables for them (made when first needed): */
+  private Dice dice;
+  private TurnTables turnTables;
+  /** Paces the game's pauses. Real time for human play, virtual (instant) for headless games. */
+  private GameClock clock;
 
-  /** Card Collections, with allCards keyed by name, and the other Maps keyed by symbol/initial: */
-  private static final Map<String, Card> allCards = new HashMap<>();
-  private static final Map<Character, GameCharacter> characters = new HashMap<>();
-  private static final Map<Character, Estate> estates = new HashMap<>();
-  private static final Map<Character, Weapon> weapons = new HashMap<>();
+  /**
+   * Constructs a new game reading user input from the specified Scanner.
+   * If showGui is false, no window is created for the game.
+   */
+  public Board(Scanner input, boolean showGui){
+    this(input, showGui, System.out, new SplittableRandom().nextLong(), 0);
+  }
 
-  /** Game ending fields: */
-  private static final Set<Card> solution = new HashSet<>();
-  private static boolean gameOver;
+  /**
+   * Constructs a new headless game played only by Computers, using the specified seed.
+   * The game is abandoned after maxTurns turns (if above 0), and nothing is printed.
+   */
+  public Board(long seed, int maxTurns){
+    this(seed, maxTurns, new PrintStream(OutputStream.nullOutputStream()));
+  }
 
-  /** Scanner for user input: */
-  private static final Scanner input = new Scanner(System.in);
-  
+  /**
+   * Constructs a new headless game played only by Computers, printing its messages to out.
+   * Useful for replaying a specific game from its seed.
+   */
+  public Board(long seed, int maxTurns, PrintStream out){
+    this(null, false, out, seed, maxTurns);
+  }
 
+  private Board(Scanner input, boolean showGui, PrintStream out, long seed, int maxTurns){
+    this.input = input;
+    this.out = out;
+    this.seed = seed;
+    this.random = new SplittableRandom(seed);
+    this.maxTurns = maxTurns;
+    this.dice = Dice.twoD6(random);
+    this.clock = input == null ? GameClock.virtual() : GameClock.realTime();
+    this.advisor = input == null ? null : new GuessAdvisor();
+    this.computers = input == null ? Computer::new : MctsComputer::new;
+    this.gui = showGui ? new GUI(this) : null;
+  }
 
   /**
-   * Sets up the Board for a new game:
+   * Sets up the Board for a new game, then plays it until it is over:
+   * (The Players are told the game is over even if it fails, so they can stop, e.g. a bot's process).
    */
-  private static void initBoard() {
+  public void initBoard() {
     initCards();
     initSquares();
-    initPlayers();
-    wait(1000);
-    dealCards();
-    wait(1000);
-    startGame();
+    try {
+      initPlayers();
+      pause(1000);
+      dealCards();
+      pause(1000);
+      startGame();
+    } finally {
+      for (Player p : players){
+        if (p == null) continue;
+        p.stopPondering();
+        p.gameFinished(this);
+      }
+    }
   }
   
-  public static boolean gameOver() {
+  public boolean gameOver() {
 	  return gameOver;
   }
   
   /*
    * Gets list of characters. *should be moved to game class*
    */
-  public static List<GameCharacter> characterList() {
+  public List<GameCharacter> characterList() {
 	  List<GameCharacter> characterList = new ArrayList<>();
 	  for(GameCharacter c : characters.values()) {
 		  characterList.add(c);
@@ -76,7 +166,7 @@ public class Board {
   /*
    * Gets list of estates. *should be moved to game class*
    */
-  public static List<Estate> estateList() {
+  public List<Estate> estateList() {
 	  List<Estate> estateList = new ArrayList<>();
 	  for(Estate e : estates.values()) {
 		  estateList.add(e);
@@ -87,7 +177,7 @@ public class Board {
   /*
    * Draws the grid by calling draw on each square.
    */
-  public static void drawBoard(Graphics g) {
+  public void drawBoard(Graphics g) {
 	  g.setColor(new Color(56,56,56));
 	  g.fillRect(20, 20, GUI.SIZE-40, GUI.SIZE-40);
 	  //g.fillRect(145, 100, 40, 40);
@@ -95,16 +185,24 @@ public class Board {
 	  //g.fillRect(board);
 	  
 	  //Draws Each Square
-	  for(int row = 0; row < ROWS; row++) {
-		  for(int col = 0; col < COLS; col++) {
+	  for(int row = 0; row < grid.length; row++) {
+		  for(int col = 0; col < grid[row].length; col++) {
 			  Square s = grid[row][col];
 			  s.drawSquare(g);  
 		  }
 	  }
 	  
+	  //Highlights the squares the current player can reach
+	  g.setColor(new Color(130,209,172,90));
+	  for(int cell : highlights) {
+		  int row = model.layout.row(cell);
+		  int col = model.layout.col(cell);
+		  g.fillRect((col*Square.SIZE)+Square.WALL+2, (row*Square.SIZE)+Square.WALL+2, Square.SIZE-3, Square.SIZE-3);
+	  }
+	  
 	  //Draws the walls of the estates. Needs to be done after previous loop to stop overlapping of squares and sides.
-	  for(int row = 0; row < ROWS; row++) {
-		  for(int col = 0; col < COLS; col++) {
+	  for(int row = 0; row < grid.length; row++) {
+		  for(int col = 0; col < grid[row].length; col++) {
 			  Square s = grid[row][col];
 			  if(s instanceof EstateSquare) {
 				  EstateSquare es = (EstateSquare) s;
@@ -113,8 +211,8 @@ public class Board {
 		  }
 	  }
 	  
-	  for(int row = 0; row < ROWS; row++) {
-		  for(int col = 0; col < COLS; col++) {
+	  for(int row = 0; row < grid.length; row++) {
+		  for(int col = 0; col < grid[row].length; col++) {
 			  Square s = grid[row][col];
 			  if(s instanceof EstateSquare) {
 				  EstateSquare es = (EstateSquare) s;
@@ -128,32 +226,23 @@ public class Board {
   /**
    * Creates all Cards and puts them in their collections:
    */
-  private static void initCards(){
-    // GameCharacters:
-    for (GameCharacter.Name cn : GameCharacter.Name.values()) {
-      String name = cn.toString();
-      GameCharacter c = new GameCharacter(name);
-      characters.put(c.initial, c);
-      allCards.put(name.toLowerCase(), c);
-    }
+  private void initCards(){
+    registry = new CardRegistry(config);
+
+    // GameCharacters, each played by a Player:
+    for (Card c : registry.all(CardRegistry.Category.CHARACTER)) characters.put(c.initial, (GameCharacter) c);
+    players = new Player[characters.size()];
 
     // Estates:
-    for (Estate.Name en : Estate.Name.values()) {
-      String name = en.toString().replace('_', ' '); // replace underscore with space
-      Estate e = new Estate(name);
-      estates.put(e.initial, e);
-      allCards.put(name.toLowerCase(), e);
-    }
+    for (Card c : registry.all(CardRegistry.Category.ESTATE)) estates.put(c.initial, (Estate) c);
 
-    // Weapons, also add each one to a random estate:
+    // Weapons, also add each one to a random estate (spreading them out if there are more weapons than estates):
     List<Estate> estateList = new ArrayList<>(estates.values());
-    Collections.shuffle(estateList); // randomizes order
-    for (Weapon.Name wn : Weapon.Name.values()) {
-      String name = wn.toString();
-      Weapon w = new Weapon(name);
+    shuffle(estateList); // randomizes order
+    for (Card c : registry.all(CardRegistry.Category.WEAPON)) {
+      Weapon w = (Weapon) c;
+      Estate e = estateList.get(weapons.size() % estateList.size());
       weapons.put(w.initial, w);
-      allCards.put(name.toLowerCase(), w);
-      Estate e = estateList.get(wn.ordinal());
       e.addContents(w);
       w.setEstate(e);
     }
@@ -161,159 +250,122 @@ public class Board {
 
   /**
    * Create all Squares that make up the Board and setup Estate
-   * and GameCharacter positions:
+   * and GameCharacter positions.
+   * The Squares are views of the compact GridModel, which is built on the shared MapLayout:
    */
-  private static void initSquares(){
-    String startingBoard =
-            "   0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3\n" +
-            "00. . . . . . . . . . . . . . . . . . . . . . . . .\n" +
-            "01. . . . . . . . . . . .L. . . . . . . . . . . . .\n" +
-            "02. . .h.h.h.h.h. . . . . . . . . . .m.m.m.m.m. . .\n" +
-            "03. . .h.h.h.h.e. . . . . . . . . . .m.m.m.m.m. . .\n" +
-            "04. . .h.h.h.h.h. . . . . . . . . . .m.m.m.m.m. . .\n" +
-            "05. . .h.h.h.h.h. . . . .x.x. . . . .e.m.m.m.m. . .\n" +
-            "06. . .h.h.h.e.h. . . . .x.x. . . . .m.m.m.e.m. . .\n" +
-            "07. . . . . . . . . . . . . . . . . . . . . . . . .\n" +
-            "08. . . . . . . . . . . . . . . . . . . . . . . . .\n" +
-            "09. .B. . . . . . . . . . . . . . . . . . . . . . .\n" +
-            "10. . . . . . . . . .v.v.v.e.v.v. . . . . . . . . .\n" +
-            "11. . . . . .x.x. . .v.v.v.v.v.e. . .x.x. . . . . .\n" +
-            "12. . . . . .x.x. . .e.v.v.v.v.v. . .x.x. . . . . .\n" +
-            "13. . . . . . . . . .v.v.e.v.v.v. . . . . . . . . .\n" +
-            "14. . . . . . . . . . . . . . . . . . . . . . .P. .\n" +
-            "15. . . . . . . . . . . . . . . . . . . . . . . . .\n" +
-            "16. . . . . . . . . . . . . . . . . . . . . . . . .\n" +
-            "17. . .c.e.c.c.c. . . . .x.x. . . . .p.e.p.p.p. . .\n" +
-            "18. . .c.c.c.c.e. . . . .x.x. . . . .p.p.p.p.p. . .\n" +
-            "19. . .c.c.c.c.c. . . . . . . . . . .p.p.p.p.p. . .\n" +
-            "20. . .c.c.c.c.c. . . . . . . . . . .e.p.p.p.p. . .\n" +
-            "21. . .c.c.c.c.c. . . . . . . . . . .p.p.p.p.p. . .\n" +
-            "22. . . . . . . . . .M. . . . . . . . . . . . . . .\n" +
-            "23. . . . . . . . . . . . . . . . . . . . . . . . .";
-
-    String[] lines = startingBoard.split("\n");
-
-    // Go through each row of the starting board:
-    for (int row = 0; row < ROWS; row++) {
-      String line = lines[row + 1];
-      String[] tokens = line.split("\\.");
-
-      // Go through each column in the row (columns are separated by '.'):
-      for (int col = 0; col < COLS; col++) {
-        char token = tokens[col + 1].toCharArray()[0];
-
-        if (token == ' ') grid[row][col] = new NormalSquare(row, col); // normal squares are blank
-        else if (token == 'x') grid[row][col] = new WallSquare(row, col); // wall squares are 'x'
-
-        // Only Estate squares are lowercase (excluding 'x'):
-        else if (Character.isLowerCase(token)){
-          Estate e;
-
-          // If the Estate square is an entrance:
-          boolean entrance = false;
-          if (token == 'e'){
-            // Get its Estate by checking the squares to the left and above:
-            if (grid[row][col-1] instanceof EstateSquare) e = ((EstateSquare) grid[row][col-1]).estate;
-            else e = ((EstateSquare) grid[row-1][col]).estate;
-            entrance = true;
-          }
-          else e = estates.get(token);
-
-          EstateSquare s = new EstateSquare(row, col, e, entrance);
-          if (entrance) e.addEntrance(s);
-          grid[row][col] = s;
-        }
-
-        // Else it must be a GameCharacter:
-        else {
-          NormalSquare s = new NormalSquare(row, col);
-          grid[row][col] = s;
-          GameCharacter c = characters.get(token);
-          s.setCharacter(c);
-          c.moveToSquare(s);
+  private void initSquares(){
+    if (layout == null) layout = MapLayout.standard();
+    layout.distances(); // computed once when the map is loaded, then shared
+    GameCharacter[] characterArray = new GameCharacter[characters.size()];
+    for (GameCharacter c : characters.values()) characterArray[c.index] = c;
+
+    // Match each of the map's estate ids to its Estate:
+    Estate[] estateIds = new Estate[layout.estateCount()];
+    for (int id = 0; id < estateIds.length; id++){
+      estateIds[id] = estates.get(layout.estateSymbol(id));
+      if (estateIds[id] == null) throw new IllegalArgumentException("No estate for map symbol '"+layout.estateSymbol(id)+"'");
+    }
+    if (estateIds.length != estates.size()) throw new IllegalArgumentException("Not every estate is on the map");
+    model = new GridModel(layout, characterArray, estateIds);
+    reachability = new Reachability(model);
+    pathfinder = layout.size() >= ClusterPathfinder.LARGE_MAP_CELLS ? new ClusterPathfinder(model) : null;
+
+    // Create a Square view for each cell:
+    grid = new Square[layout.rows][layout.cols];
+    for (int row = 0; row < layout.rows; row++) {
+      for (int col = 0; col < layout.cols; col++) {
+        int cell = layout.index(row, col);
+        switch (layout.type(cell)){
+          case MapLayout.NORMAL:
+            grid[row][col] = new NormalSquare(model, row, col);
+            break;
+          case MapLayout.WALL:
+            grid[row][col] = new WallSquare(row, col);
+            break;
+          default:
+            Estate e = estateIds[layout.estateId(cell)];
+            boolean entrance = layout.isEntrance(cell);
+            EstateSquare s = new EstateSquare(row, col, e, entrance);
+            if (entrance) e.addEntrance(s); // added in map order, matching the layout's entrance index
+            if (layout.innerIndex(cell) != -1) e.addInnerTile(s);
+            s.setSide(layout.side(cell));
+            grid[row][col] = s;
         }
       }
     }
 
-    // Finally, run through all Estate Squares to determine which are on the inside or outside.
-    // If outside, also determine its side.
-    for (int row = 0; row < ROWS; row++){
-      for (int col = 0; col < COLS; col++){
-        Square square = grid[row][col];
-        if (!(square instanceof EstateSquare)) continue;
-        EstateSquare s = (EstateSquare) square;
-        Estate e = s.estate;
-
-        int sides = 0; // on how many sides of the estate it is. 2 means it is a corner.
-        Estate.Side side =  null; // if its only on one side, this will hold that side.
-        Square outer = null; // the square directly outside an entrance.
-
-        // Determine what side(s) the EstateSquare is on by checking if an adjacent one
-        // isn't part of the Estate:
-        if (!(grid[row][col-1] instanceof EstateSquare)){ // Left side
-          sides++;
-          side = Estate.Side.LEFT;
-          outer = grid[row][col-1];
-        }
-        else if (!(grid[row][col+1] instanceof EstateSquare)){ // Right side
-          sides++;
-          side = Estate.Side.RIGHT;
-          outer = grid[row][col+1];
-        }
-        if (!(grid[row-1][col] instanceof EstateSquare)){ // Top side
-          sides++;
-          side = Estate.Side.TOP;
-          outer = grid[row-1][col];
-        }
-        else if (!(grid[row+1][col] instanceof EstateSquare)){ // Bottom side
-          sides++;
-          side = Estate.Side.BOTTOM;
-          outer = grid[row+1][col];
-        }
+    // Entrances store the square directly outside them. This is useful for knowing if the entrance is blocked:
+    for (Estate e : estates.values()){
+      for (EstateSquare s : e.getEntrances()){
+        int outer = layout.outerCell(layout.index(s.row, s.col));
+        if (outer == -1) continue; // on the edge of the map, so it can never be used
+        s.setOuterSquare((NormalSquare) grid[layout.row(outer)][layout.col(outer)]);
+      }
+    }
 
-        // If square is an entrance, store the square directly outside of it.
-        // This is useful for knowing if the entrance is blocked.
-        if (s.entrance) s.setOuterSquare((NormalSquare)outer);
+    // Finally, place each GameCharacter on its starting square:
+    for (int i = 0; i < layout.startCount(); i++){
+      GameCharacter c = characters.get(layout.startSymbol(i));
+      if (c == null || c.getSquare() != null) continue; // no one starts there
+      int cell = layout.startCell(i);
+      Square s = grid[layout.row(cell)][layout.col(cell)];
+      s.setCharacter(c);
+      c.moveToSquare(s);
+    }
 
-        switch (sides){
-          case 0: // it is an inner square
-            e.addInnerTile(s);
-            break;
-          case 1: // it is an outer square
-            s.setSide(side);
-            break;
-        }
-        // If it has 2 sides it is a corner, but this is already handled within the class.
-      }
+    // GameCharacters without a starting square on the map start on the first free squares:
+    int cell = 0;
+    for (GameCharacter c : characterArray){
+      if (c.getSquare() != null) continue;
+      // (Not outside an entrance, so no exit is blocked):
+      while (cell < layout.size() && (layout.type(cell) != MapLayout.NORMAL || model.isBlocked(cell)
+              || layout.guardStart(cell) != layout.guardEnd(cell))) cell++;
+      if (cell == layout.size()) throw new IllegalArgumentException("No room on the map for "+c);
+      Square s = grid[layout.row(cell)][layout.col(cell)];
+      s.setCharacter(c);
+      c.moveToSquare(s);
     }
   }
 
   /**
    * Asks user for number of Players and lets each Player choose their GameCharacter:
+   * (If headless, every character is instead played by a Computer with a random player number).
    */
-  private static void initPlayers(){
+  private void initPlayers(){
+    if (isHeadless()){
+      List<Integer> numbers = new ArrayList<>();
+      for (int i = 0; i < players.length; i++) numbers.add(i+1);
+      shuffle(numbers);
+      for (GameCharacter c : characters.values()){
+        players[c.index] = computers.apply(numbers.get(c.index), c);
+      }
+      return;
+    }
 
     // Intro:
     System.out.println(LINE+"\nWelcome to Murder Madness!\n"+LINE);
 
-    // Choose number of players:
-    System.out.println("Please enter the number of players (3 or 4):");
+    // Choose number of players (at least 3, unless there are fewer characters), the rest being played by the computer:
+    int total = players.length;
+    int fewest = Math.min(3, total);
+    String range = fewest == total ? String.valueOf(total) : fewest+" to "+total;
+    System.out.println("Please enter the number of players ("+range+"):");
     int number = -1;
     while (input.hasNext()){
       if (input.hasNextInt()) {
         number = input.nextInt();
-        if (number == 3 || number == 4) break;
+        if (number >= fewest && number <= total) break;
       }
       else input.nextLine();
-      System.out.println("Please enter a valid integer (3 or 4):");
+      System.out.println("Please enter a valid integer ("+range+"):");
     }
     System.out.println("Number of players set to: "+number);
-    if (number == 3) System.out.println("Player 4 will be played by the computer.");
+    for (int n = number+1; n <= total; n++) System.out.println("Player "+n+" will be played by the computer.");
     System.out.println();
 
-    // Let players select characters:
-    Map<Character, GameCharacter> availableCharacters = new HashMap<>(characters);
-    for (int i = 0; i < 3; i++){
+    // Let players select characters (the last one gets whoever is left):
+    Map<Character, GameCharacter> availableCharacters = new TreeMap<>(characters);
+    for (int i = 0; i < Math.min(number, total-1); i++){
       String availableNames = "";
       for (GameCharacter c : availableCharacters.values()) availableNames += c + ", ";
       System.out.println("Available characters: "+availableNames);
@@ -325,18 +377,16 @@ public class Board {
         String in = input.nextLine();
 
         if (!in.isEmpty()){
-          char initial = Character.toUpperCase(in.charAt(0));
-
-          if (availableCharacters.containsKey(initial)){
-            GameCharacter c = availableCharacters.get(initial);
-
-            if (in.length() == 1 || in.equalsIgnoreCase(c.toString())) {
-              availableCharacters.remove(initial);
-              int index = GameCharacter.Name.valueOf(c.toString()).ordinal();
-              players[index] = new Player(playerNum, c);
-              System.out.println(c+" chosen successfully!\n");
-              break;
-            }
+          GameCharacter c = in.length() == 1 ? availableCharacters.get(Character.toUpperCase(in.charAt(0))) : null;
+          for (GameCharacter a : availableCharacters.values()){
+            if (in.equalsIgnoreCase(a.toString())) c = a;
+          }
+
+          if (c != null){
+            availableCharacters.remove(c.initial);
+            players[c.index] = new Player(playerNum, c);
+            System.out.println(c+" chosen successfully!\n");
+            break;
           }
         }
         else continue;
@@ -345,106 +395,166 @@ public class Board {
       }
     }
 
-    // Player 4 or Computer must select the remaining character:
-    GameCharacter c = availableCharacters.values().iterator().next();
-    int index = GameCharacter.Name.valueOf(c.toString()).ordinal();
-    Player p;
-    if (number == 4) p = new Player(4, c);
-    else p = new Computer(4, c);
-    players[index] = p;
-    System.out.println((number == 4 ? "Player 4" : "Computer") + " will play "+c+".\n");
+    // The last Player and the Computers get the remaining characters:
+    int playerNum = Math.min(number, total-1);
+    for (GameCharacter c : availableCharacters.values()){
+      playerNum++;
+      Player p;
+      if (playerNum <= number) p = new Player(playerNum, c);
+      else p = computers.apply(playerNum, c);
+      players[c.index] = p;
+      System.out.println((playerNum <= number ? "Player "+playerNum : "Computer "+playerNum) + " will play "+c+".");
+    }
+    System.out.println();
   }
 
   /**
    * Randomly pick a solution, and shuffle all remaining Cards together
    * before dealing them to each Player:
    */
-  private static void dealCards(){
-    // Convert each card collection into a list so they're ordered, and add a random one to the solution:
-    solution.add(new ArrayList<Card>(characters.values()).get((int)(Math.random() * characters.size())));
-    solution.add(new ArrayList<Card>(estates.values()).get((int)(Math.random() * estates.size())));
-    solution.add(new ArrayList<Card>(weapons.values()).get((int)(Math.random() * weapons.size())));
+  private void dealCards(){
+    // Add a random card of each category to the solution (the deck holds each category in turn):
+    int firstEstate = characters.size(), firstWeapon = firstEstate + estates.size();
+    long murder = 1L << random.nextInt(firstEstate);
+    murder |= 1L << (firstEstate + random.nextInt(estates.size()));
+    murder |= 1L << (firstWeapon + random.nextInt(weapons.size()));
+    solution = registry.set(murder);
 
-    System.out.println("Murder created. :)");
+    out.println("Murder created. :)");
 
     // Make a list of all remaining cards:
-    List<Card> remainingCards = new ArrayList<>(allCards.values());
-    for (Card c : solution) remainingCards.remove(c);
+    List<Card> remainingCards = new ArrayList<>();
+    for (Card c : registry.all()){
+      if (!solution.contains(c)) remainingCards.add(c);
+    }
 
     // Shuffle cards and deal them to players starting with a random player:
-    Collections.shuffle(remainingCards);
-    currentPlayerIndex = (int)(Math.random() * players.length);
+    shuffle(remainingCards);
+    currentPlayerIndex = random.nextInt(players.length);
 
+    long[] hands = new long[players.length];
     while (!remainingCards.isEmpty()){
       Card c = remainingCards.remove(remainingCards.size()-1);
-      Player p = players[currentPlayerIndex];
-      p.addToHand(c);
+      hands[currentPlayerIndex] |= CardSet.bit(c);
       changePlayer();
     }
+    for (int i = 0; i < players.length; i++) players[i].setHand(registry.set(hands[i]));
+    holders = new CardHolders(registry.size(), hands);
 
-    System.out.println("Cards dealt.");
+    out.println("Cards dealt.");
   }
 
 
   /**
    * Starts and controls the main game loop: *move to game class*
    */
-  private static void startGame(){
+  private void startGame(){
     // Randomly pick which player starts:
-    currentPlayerIndex = (int)(Math.random() * players.length);
+    currentPlayerIndex = random.nextInt(players.length);
+    zobrist = ZobristHash.of(this);
 
-    System.out.println("Starting Game...");
-    wait(1000);
+    out.println("Starting Game...");
+    pause(1000);
     
-    gui.setVisible(true); //opens GUI window
+    if (gui != null) gui.setVisible(true); //opens GUI window
 
     // Gameplay loop:
     while (!gameOver){
       displayBoard();
       Player next = players[currentPlayerIndex];
-      next.startTurn(input, players, currentPlayerIndex, allCards, solution, grid);
+      // Let the Computers think ahead while a person takes their turn:
+      boolean person = !(next instanceof Computer);
+      for (int i = 0; person && i < players.length; i++){
+        if (players[i] != next) players[i].startPondering(this);
+      }
+      next.startTurn(this);
+      for (int i = 0; person && i < players.length; i++) players[i].stopPondering();
+      setHighlights(new int[0]);
       endTurn();
+
+      // Abandon the game if it has reached the turn limit:
+      turns++;
+      if (maxTurns > 0 && turns >= maxTurns) gameOver = true;
     }
-    gui.repaint();
-    
-    
-    
+    repaint();
   }
 
   /**
    * Changes player at the end of each turn.
    */
-  private static void endTurn(){
+  private void endTurn(){
     changePlayer();
   }
 
   /**
    * Sets the game over flag to true and outputs the winner (or that everyone was eliminated).
    */
-  public static void endGame(boolean won){
+  public void endGame(boolean won){
     gameOver = true;
-    System.out.println(LINE);
+    out.println(LINE);
     if (won){
       Player p = players[currentPlayerIndex];
-      System.out.println("Congratulations! Player "+p.number+" ("+p.character+") wins!");
+      winner = p;
+      out.println("Congratulations! Player "+p.number+" ("+p.character+") wins!");
     }
-    else System.out.println("All players eliminated. GAME OVER.");
-    System.out.println(LINE);
+    else out.println("All players eliminated. GAME OVER.");
+    out.println(LINE);
   }
 
   /**
-   * Iterates to the next player index in the character order: Lucilla, Bert, Malina, Percy.
+   * Iterates to the next player index in the character order (Lucilla, Bert, Malina, Percy in the standard deck).
    */
-  public static void changePlayer(){
+  public void changePlayer(){
+    if (zobrist != null) zobrist.toggleTurn(currentPlayerIndex);
     currentPlayerIndex++;
     if (currentPlayerIndex >= players.length) currentPlayerIndex = 0;
+    if (zobrist != null) zobrist.toggleTurn(currentPlayerIndex);
   }
 
+  /**
+   * Returns the hash of the game's position (where every Card is, whose turn it is, who's been eliminated
+   * and what each Player has worked out), or 0 if the game hasn't started:
+   */
+  public long getHash(){ return zobrist == null ? 0 : zobrist.get(); }
+
+  /** Updates the position's hash as a Card moves: called before and after it moves. */
+  public void toggleHash(Card c){
+    if (zobrist != null) zobrist.toggle(this, c);
+  }
+
+  /** Updates the position's hash as the seat's Player makes a solve attempt: */
+  public void hashEliminated(int seat){
+    if (zobrist != null) zobrist.toggleEliminated(seat);
+  }
+
+  /** Updates the position's hash with the Cards the seat's Player knows aren't in the solution: */
+  public void hashKnown(int seat, long cards){
+    if (zobrist != null) zobrist.setKnown(seat, cards);
+  }
+
+
+  /**
+   * Returns a hint for the Player whose turn it is (or a message if there isn't one yet), e.g. for the GUI:
+   */
+  public String hint(){
+    if (players == null || holders == null || gameOver) return "There are no hints to give right now.";
+    return players[currentPlayerIndex].hint(this);
+  }
+
+  /**
+   * Tells every Player about a guess, with the seats of the guesser and the refuter (-1 if no one could refute it).
+   * The revealed Card is only shown to the guesser and the refuter.
+   */
+  public void announceGuess(int guesser, CardSet guess, int refuter, Card shown){
+    for (int i = 0; i < players.length; i++){
+      players[i].observeGuess(this, guesser, guess, refuter, i == guesser || i == refuter ? shown : null);
+    }
+  }
 
   /**
    * Returns true if all players have made solve attempts.
    */
-  public static boolean allPlayersEliminated(){
+  public boolean allPlayersEliminated(){
     for (Player p : players){
       if (!p.solveAttempted()) return false;
     }
@@ -452,21 +562,101 @@ public class Board {
   }
 
   /**
-   * Pauses the program for a specified amount of time:
+   * Redraws the GUI window (if this game has one):
    */
-  public static void wait(int millis){
-    try {
-      Thread.sleep(millis);
-    } catch (InterruptedException e){
-      Thread.currentThread().interrupt();
+  public void repaint(){
+    if (gui != null) gui.repaint();
+  }
+
+  /** Getters used by Players during their turn: */
+  public Scanner getInput(){ return input; }
+  public Player[] getPlayers(){ return players; }
+  public int getCurrentPlayerIndex(){ return currentPlayerIndex; }
+  public CardSet getSolution(){ return solution; }
+  public CardHolders getHolders(){ return holders; }
+  /** Returns the Cards of the game (with lookups by name), the set of every Card, and the Card with the specified id: */
+  public CardRegistry getRegistry(){ return registry; }
+  public CardSet getDeck(){ return registry.all(); }
+  public Card getCard(int id){ return registry.get(id); }
+  public Square[][] getGrid(){ return grid; }
+  public GridModel getModel(){ return model; }
+  /** Sets the deck to play with, which must be done before the game starts: */
+  public void setConfig(GameConfig config){
+    if (players != null) throw new IllegalStateException("The game has already started");
+    this.config = config;
+  }
+  public GameConfig getConfig(){ return config; }
+
+  /** Sets the map to play on, which must be done before the game starts: */
+  public void setLayout(MapLayout layout){
+    if (model != null) throw new IllegalStateException("The game has already started");
+    String problem = new MapValidator().check(layout);
+    if (problem != null) throw new IllegalArgumentException("Invalid map: "+problem);
+    this.layout = layout;
+  }
+  public Reachability getReachability(){ return reachability; }
+  /** Returns the pathfinder for routes across the map, or null if the map is small enough to search directly: */
+  public ClusterPathfinder getPathfinder(){ return pathfinder; }
+  /** Sets the cells highlighted in the GUI as places the current Player can move to: */
+  public void setHighlights(int[] cells){ highlights = cells; }
+  public SplittableRandom getRandom(){ return random; }
+  public PrintStream getOut(){ return out; }
+  public GameClock getClock(){ return clock; }
+  public Dice getDice(){ return dice; }
+  /**
+   * Returns the TurnTables of the map for the game's dice:
+   * (The map's own tables for two six-sided dice, as they're shared, else ones made for the dice).
+   */
+  public TurnTables getTurnTables(){
+    if (turnTables == null){
+      double[] distribution = dice.distribution();
+      turnTables = Arrays.equals(distribution, Dice.twoD6Distribution()) ? layout.turnTables() : new TurnTables(layout, distribution);
+    }
+    return turnTables;
+  }
+  /** Sets the GuessAdvisor Computers and hints use (null to have Computers guess at random): */
+  public void setAdvisor(GuessAdvisor advisor){ this.advisor = advisor; }
+  public GuessAdvisor getAdvisor(){ return advisor; }
+  /** Sets how the Players the computer plays are created, e.g. to have some play with an MctsSearch: */
+  public void setComputers(BiFunction<Integer, GameCharacter, Player> computers){ this.computers = computers; }
+  /** Replaces the dice Players roll, e.g. with fixed rolls for tests. */
+  public void setDice(Dice dice){
+    this.dice = dice;
+    turnTables = null;
+  }
+  /** Replaces the clock pacing this game, e.g. to speed up or slow down a replay. */
+  public void setClock(GameClock clock){ this.clock = clock; }
+
+  /** Getters for a game's result: */
+  public long getSeed(){ return seed; }
+  public int getTurns(){ return turns; }
+  public Player getWinner(){ return winner; }
+
+  /** Returns true if the game has no user input, so is played only by Computers. */
+  public boolean isHeadless(){ return input == null; }
+
+  /**
+   * Shuffles a list using this game's random source:
+   */
+  private <T> void shuffle(List<T> list){
+    for (int i = list.size() - 1; i > 0; i--){
+      Collections.swap(list, i, random.nextInt(i + 1));
     }
   }
 
+  /**
+   * Pauses the game so that people can follow along.
+   * How long it actually lasts depends on the game's clock.
+   */
+  public void pause(int millis){
+    clock.pause(millis);
+  }
+
   /**
    * Halts execution until the desired input is entered:
    * (Case insensitive).
    */
-  public static void requireInput(String key){
+  public void requireInput(String key){
     while (input.hasNext()){
       String in = input.nextLine();
       if (in.equalsIgnoreCase(key)) return;
@@ -476,7 +666,8 @@ public class Board {
   /**
    * Prints the board out to the console in text form:
    */
-  public static void displayBoard(){
+  public void displayBoard(){
+    if (isHeadless()) return; // no one to show it to
     StringBuilder output = new StringBuilder(LINE+"\nGame Board:\n"+LINE+"\n"+MAP_BORDER+"\n");
 
     // Set up key:
@@ -494,15 +685,15 @@ public class Board {
     key.add("e = Estate Entrance");
 
     // Go through grid, printing each square row by row:
-    for (int row = 0; row < ROWS; row++) {
+    for (int row = 0; row < grid.length; row++) {
 
-      for (int col = 0; col < COLS; col++) {
+      for (int col = 0; col < grid[row].length; col++) {
         Square s = grid[row][col];
         output.append(s);
 
         // If estate square, don't put "." between squares:
         if (s instanceof EstateSquare){
-          boolean onRight = (grid[row][col+1] instanceof EstateSquare);
+          boolean onRight = col + 1 < grid[row].length && grid[row][col+1] instanceof EstateSquare;
           if (onRight) output.append(" ");
           else output.append(".");
         }
@@ -511,15 +702,15 @@ public class Board {
       if (row < key.size()) output.append(" ").append(key.get(row));
       output.append("\n");
     }
-    System.out.println(output+MAP_BORDER);
+    out.println(output+MAP_BORDER);
   }
 
-  public static void main(String... args){
-	Board.initBoard();
+  /**
+   * Starts a game on the standard map, or on the map file given as the first argument:
+   */
+  public static void main(String... args) throws IOException {
+    Board board = new Board(new Scanner(System.in), true);
+    if (args.length > 0) board.setLayout(MapLoader.load(Paths.get(args[0])));
+    board.initBoard();
   }
-  
-  
-  
-  
-  
 }
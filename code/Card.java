@@ -10,13 +10,16 @@ public class Card {
     public final String name;
     /** The Card's defining character symbol. Shown on the board's text display. */
     public final char initial;
+    /** The Card's position in the game's deck (from 0), used as its bit in a CardSet. */
+    public final int id;
     /** The Estate the Card is in, if it is in one. Only applies to GameCharacters and Weapons. */
     private Estate estate;
 
-    /** Creates a new Card with the specified name and initial: */
-    protected Card(String name, char initial){
+    /** Creates a new Card with the specified name, initial and position in the deck: */
+    protected Card(String name, char initial, int id){
         this.name = name;
         this.initial = initial;
+        this.id = id;
     }
 
     public void setEstate(Estate e){ this.estate = e; }
@@ -29,11 +32,11 @@ public class Card {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Card card = (Card) o;
-        return name.equals(card.name);
+        return id == card.id && name.equals(card.name);
     }
 
     @Override
-    public int hashCode() { return name.hashCode(); }
+    public int hashCode() { return id; }
 
     @Override
     public String toString(){ return name; }
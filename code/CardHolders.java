@@ -0,0 +1,61 @@
+import java.util.Arrays;
+
+/**
+ * CardHolders indexes which seat (index into the Board's players) holds each Card, as dealt at the start of a game,
+ * so a guess's refutation can be resolved without asking each Player in turn to check their hand.
+ *
+ * Finding the first Player after a seat who can refute a guess takes a step per guessed Card
+ * (so three for a normal guess), whatever the number of players.
+ */
+public final class CardHolders {
+
+  /** The seat holding each Card (by id), or -1 if nobody does (i.e. it's in the solution): */
+  private final byte[] holders;
+  /** The bitmask of the Cards held by each seat: */
+  private final long[] held;
+
+  /**
+   * Constructs the index from the bitmask of each seat's hand, for a deck of the specified size:
+   */
+  public CardHolders(int deckSize, long[] hands){
+    holders = new byte[deckSize];
+    held = hands.clone();
+    Arrays.fill(holders, (byte) -1);
+    for (int seat = 0; seat < hands.length; seat++){
+      for (long b = hands[seat]; b != 0; b &= b - 1) holders[Long.numberOfTrailingZeros(b)] = (byte) seat;
+    }
+  }
+
+  /** Returns the seat holding the Card, or -1 if nobody does: */
+  public int holder(Card c){ return holders[c.id]; }
+  public int holder(int id){ return holders[id]; }
+
+  /** Returns the bitmask of the Cards held by the seat: */
+  public long held(int seat){ return held[seat]; }
+
+  /** Returns the number of seats: */
+  public int seats(){ return held.length; }
+
+  /**
+   * Returns the first seat after the specified one (in order of play) holding any of the guessed Cards,
+   * or -1 if no other seat holds any of them:
+   */
+  public int firstRefuter(int seat, long guess){
+    int n = held.length;
+    int best = -1, bestDistance = n;
+    for (long b = guess; b != 0; b &= b - 1){
+      int h = holders[Long.numberOfTrailingZeros(b)];
+      if (h < 0) continue;
+      int distance = h - seat;
+      if (distance <= 0) distance += n; // the seat itself is the furthest, so is never chosen
+      if (distance < bestDistance){
+        best = h;
+        bestDistance = distance;
+      }
+    }
+    return best;
+  }
+
+  /** Returns the bitmask of the guessed Cards the seat can refute with (one of which it must reveal): */
+  public long refutations(int seat, long guess){ return held[seat] & guess; }
+}
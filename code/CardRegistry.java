@@ -0,0 +1,176 @@
+import java.util.*;
+
+/**
+ * CardRegistry creates and holds every Card in a game, giving each a dense id (its position in the deck:
+ * GameCharacters, then Estates, then Weapons).
+ *
+ * It also prebuilds case-insensitive indices of the cards' names and every prefix of them, by category,
+ * so a typed name can be looked up, abbreviated (any prefix matching one card, like "cal" for Calamity Castle)
+ * or autocompleted. Lookups take CharSequences and allocate nothing.
+ */
+public final class CardRegistry {
+
+  /** The categories of Cards: */
+  public enum Category {
+    CHARACTER, ESTATE, WEAPON
+  }
+
+  /** Every Card, indexed by id: */
+  private final Card[] deck;
+  private final CardSet all;
+  /** The Cards of each category (by Category ordinal): */
+  private final CardSet[] categories = new CardSet[3];
+  /** Name indices of each category (by Category ordinal), then of every card: */
+  private final NameIndex[] indices = new NameIndex[4];
+
+  /**
+   * Creates the Cards described by the config:
+   */
+  public CardRegistry(GameConfig config){
+    deck = new Card[config.cardCount()];
+    int id = 0;
+    for (GameConfig.Entry entry : config.characters) deck[id] = new GameCharacter(entry.name, entry.symbol, id++);
+    for (GameConfig.Entry entry : config.estates) deck[id] = new Estate(entry.name, entry.symbol, id++);
+    for (int i = 0; i < config.weapons.size(); i++) deck[id] = new Weapon(config.weapons.get(i).name, i, id++);
+    all = CardSet.all(deck);
+
+    // Each category is a range of ids:
+    int[] starts = {0, config.characters.size(), config.characters.size() + config.estates.size(), deck.length};
+    for (Category category : Category.values()){
+      int i = category.ordinal();
+      long bits = 0;
+      for (int c = starts[i]; c < starts[i + 1]; c++) bits |= 1L << c;
+      categories[i] = new CardSet(deck, bits);
+      indices[i] = new NameIndex(Arrays.copyOfRange(deck, starts[i], starts[i + 1]));
+    }
+    indices[3] = new NameIndex(deck);
+  }
+
+  /** Returns the number of Cards, and the Card with the specified id: */
+  public int size(){ return deck.length; }
+  public Card get(int id){ return deck[id]; }
+  /** Returns every Card, and every Card of a category: */
+  public CardSet all(){ return all; }
+  public CardSet all(Category category){ return categories[category.ordinal()]; }
+  /** Returns the set of the Cards whose ids are set in bits: */
+  public CardSet set(long bits){ return new CardSet(deck, bits); }
+
+  public Category categoryOf(Card c){
+    if (c instanceof GameCharacter) return Category.CHARACTER;
+    return c instanceof Estate ? Category.ESTATE : Category.WEAPON;
+  }
+
+  /**
+   * Returns the Card named (ignoring case and surrounding spaces) or uniquely abbreviated by the text,
+   * or null if there isn't one:
+   */
+  public Card find(CharSequence text){ return indices[3].find(deck, text); }
+
+  /** Returns the Card of the category named or uniquely abbreviated by the text, or null: */
+  public Card find(Category category, CharSequence text){ return indices[category.ordinal()].find(deck, text); }
+
+  public GameCharacter findCharacter(CharSequence text){ return (GameCharacter) find(Category.CHARACTER, text); }
+  public Estate findEstate(CharSequence text){ return (Estate) find(Category.ESTATE, text); }
+  public Weapon findWeapon(CharSequence text){ return (Weapon) find(Category.WEAPON, text); }
+
+  /** Returns every Card whose name starts with the text (ignoring case), e.g. for autocompletion: */
+  public CardSet complete(CharSequence text){ return new CardSet(deck, indices[3].matches(text)); }
+  public CardSet complete(Category category, CharSequence text){
+    return new CardSet(deck, indices[category.ordinal()].matches(text));
+  }
+
+  /**
+   * NameIndex is an open addressing hash table from every lower case name and prefix of a group of Cards
+   * to the Card with exactly that name and the Cards whose names start with it.
+   * It's queried with CharSequences, lower casing them as it goes, so lookups don't allocate.
+   */
+  private static final class NameIndex {
+    private final String[] keys;
+    private final int[] exact; // id of the Card with the key as its name, else -1
+    private final long[] matches; // bitmask of the Cards whose names start with the key
+    private final long everything;
+
+    NameIndex(Card[] cards){
+      Map<String, Long> prefixes = new HashMap<>();
+      Map<String, Integer> names = new HashMap<>();
+      long bits = 0;
+      for (Card c : cards){
+        String name = c.name.toLowerCase(Locale.ROOT);
+        names.put(name, c.id);
+        for (int end = 1; end <= name.length(); end++) prefixes.merge(name.substring(0, end), 1L << c.id, (a, b) -> a | b);
+        bits |= 1L << c.id;
+      }
+      everything = bits;
+
+      int capacity = Integer.highestOneBit(Math.max(2, prefixes.size()) * 2 - 1) << 1;
+      keys = new String[capacity];
+      exact = new int[capacity];
+      matches = new long[capacity];
+      for (Map.Entry<String, Long> p : prefixes.entrySet()){
+        String key = p.getKey();
+        int slot = hash(key, 0, key.length()) & (capacity - 1);
+        while (keys[slot] != null) slot = (slot + 1) & (capacity - 1);
+        keys[slot] = key;
+        exact[slot] = names.getOrDefault(key, -1);
+        matches[slot] = p.getValue();
+      }
+    }
+
+    /** Returns the Card with the name, else the only Card with the name as a prefix, else null: */
+    Card find(Card[] deck, CharSequence text){
+      int slot = slot(text);
+      if (slot == -1) return null;
+      if (exact[slot] != -1) return deck[exact[slot]];
+      long m = matches[slot];
+      return Long.bitCount(m) == 1 ? deck[Long.numberOfTrailingZeros(m)] : null;
+    }
+
+    /** Returns the bitmask of Cards whose names start with the text (all of them if it's blank): */
+    long matches(CharSequence text){
+      int start = start(text), end = end(text, start);
+      if (start == end) return everything;
+      int slot = slot(text);
+      return slot == -1 ? 0 : matches[slot];
+    }
+
+    /** Finds the slot of the trimmed text, or -1 if it isn't a key: */
+    private int slot(CharSequence text){
+      int start = start(text), end = end(text, start);
+      if (start == end) return -1;
+      int length = end - start;
+      int slot = hash(text, start, end) & (keys.length - 1);
+      while (keys[slot] != null){
+        String key = keys[slot];
+        if (key.length() == length && matches(key, text, start)) return slot;
+        slot = (slot + 1) & (keys.length - 1);
+      }
+      return -1;
+    }
+
+    private static boolean matches(String key, CharSequence text, int start){
+      for (int i = 0; i < key.length(); i++){
+        if (Character.toLowerCase(text.charAt(start + i)) != key.charAt(i)) return false;
+      }
+      return true;
+    }
+
+    private static int hash(CharSequence text, int start, int end){
+      int h = 0;
+      for (int i = start; i < end; i++) h = 31 * h + Character.toLowerCase(text.charAt(i));
+      return h ^ (h >>> 16);
+    }
+
+    /** The bounds of the text without surrounding whitespace: */
+    private static int start(CharSequence text){
+      int start = 0;
+      while (start < text.length() && Character.isWhitespace(text.charAt(start))) start++;
+      return start;
+    }
+
+    private static int end(CharSequence text, int start){
+      int end = text.length();
+      while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+      return end;
+    }
+  }
+}
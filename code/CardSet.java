@@ -0,0 +1,102 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * CardSet is an immutable set of Cards from one game's deck, stored as a bitmask of their ids
+ * (so a deck can have at most 64 cards, see GameConfig.MAX_CARDS).
+ *
+ * Membership, intersection and "does this hand refute this guess" are each a single AND,
+ * and none of the queries allocate, so bots and simulators can check millions of them cheaply.
+ * Only the operations that make a new set (such as with and and) allocate.
+ */
+public final class CardSet implements Iterable<Card> {
+
+  /** An empty set, not belonging to any deck: */
+  public static final CardSet EMPTY = new CardSet(new Card[0], 0);
+
+  /** Every Card in the game, indexed by id (shared by all sets of the game, so must not be modified). */
+  private final Card[] deck;
+  /** Bit i is set if the Card with id i is in the set. */
+  public final long bits;
+
+  /** Constructs the set of the Cards in the deck whose ids are set in bits: */
+  public CardSet(Card[] deck, long bits){
+    this.deck = deck;
+    this.bits = bits;
+  }
+
+  /** Returns the set of every Card in the deck: */
+  public static CardSet all(Card[] deck){
+    return new CardSet(deck, deck.length == 64 ? -1L : (1L << deck.length) - 1);
+  }
+
+  /** Returns the bit of a Card in a set's bitmask: */
+  public static long bit(Card c){ return 1L << c.id; }
+
+  /** Returns true if the bitmasks share a card (e.g. if a hand can refute a guess): */
+  public static boolean intersects(long a, long b){ return (a & b) != 0; }
+
+  public boolean contains(Card c){ return (bits & (1L << c.id)) != 0; }
+  public boolean containsAll(CardSet other){ return (other.bits & ~bits) == 0; }
+  public boolean intersects(CardSet other){ return (bits & other.bits) != 0; }
+  public boolean isEmpty(){ return bits == 0; }
+  public int size(){ return Long.bitCount(bits); }
+
+  /** Set operations, returning new sets: */
+  public CardSet with(Card c){ return new CardSet(deck, bits | (1L << c.id)); }
+  public CardSet without(Card c){ return new CardSet(deck, bits & ~(1L << c.id)); }
+  public CardSet and(CardSet other){ return new CardSet(deck, bits & other.bits); }
+  public CardSet or(CardSet other){ return new CardSet(deck, bits | other.bits); }
+  public CardSet minus(CardSet other){ return new CardSet(deck, bits & ~other.bits); }
+  /** Returns the empty set of the same deck: */
+  public CardSet none(){ return new CardSet(deck, 0); }
+
+  /** Returns the Card with the lowest id, or null if the set is empty. */
+  public Card first(){ return bits == 0 ? null : deck[Long.numberOfTrailingZeros(bits)]; }
+
+  /** Returns the n-th Card (from 0) in order of id, e.g. to pick a random one: */
+  public Card get(int n){
+    long b = bits;
+    for (int i = 0; i < n; i++) b &= b - 1;
+    if (b == 0) throw new IndexOutOfBoundsException(n+" of "+size());
+    return deck[Long.numberOfTrailingZeros(b)];
+  }
+
+  /** Iterates over the Cards in order of id: */
+  @Override
+  public Iterator<Card> iterator(){
+    return new Iterator<Card>(){
+      private long remaining = bits;
+
+      @Override
+      public boolean hasNext(){ return remaining != 0; }
+
+      @Override
+      public Card next(){
+        if (remaining == 0) throw new NoSuchElementException();
+        Card c = deck[Long.numberOfTrailingZeros(remaining)];
+        remaining &= remaining - 1;
+        return c;
+      }
+    };
+  }
+
+  @Override
+  public boolean equals(Object o){
+    return o instanceof CardSet && ((CardSet) o).bits == bits;
+  }
+
+  @Override
+  public int hashCode(){ return Long.hashCode(bits); }
+
+  /** Lists the Cards separated by commas: */
+  @Override
+  public String toString(){
+    StringBuilder s = new StringBuilder();
+    for (Card c : this){
+      if (s.length() > 0) s.append(", ");
+      s.append(c);
+    }
+    return s.toString();
+  }
+}
@@ -0,0 +1,527 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * ClusterPathfinder finds paths on large maps using hierarchical pathfinding (HPA*).
+ * The map is split into square clusters. Where two clusters share a border, portals are placed on
+ * the open stretches between them, and the steps between every pair of portals (and estate entrances)
+ * within a cluster are precomputed. A path query then searches this small abstract graph with A*,
+ * and only refines each leg of the route with a search inside a single cluster.
+ *
+ * The pathfinder listens to its GridModel, so when a cell becomes blocked or free only the clusters
+ * around it are rebuilt (lazily, on the next query). Walls are fixed by the MapLayout, so they never change
+ * during a game: occupied squares are the only cells that do.
+ * Like Reachability, it reuses its buffers and should only be used by one thread at a time.
+ *
+ * The Board only makes one for large maps, where Computers use it to head for distant Estates
+ * (on smaller maps, the DistanceFields and a Reachability search of the roll are enough).
+ */
+public final class ClusterPathfinder {
+
+  /** The default width and height of a cluster. */
+  public static final int DEFAULT_CLUSTER_SIZE = 16;
+  /** The fewest cells a map has for the Board to use a pathfinder on it (e.g. 64x64): */
+  public static final int LARGE_MAP_CELLS = 64 * 64;
+
+  /** The border directions a cell can be a portal in: */
+  private static final byte LEFT = 1, RIGHT = 2, UP = 4, DOWN = 8;
+
+  private final GridModel model;
+  private final MapLayout layout;
+  private final int clusterSize;
+  private final int clusterRows, clusterCols;
+
+  /** Abstract graph: per cell portal directions, and per cluster its nodes and the steps between them. */
+  private final byte[] portalDirs;
+  private final short[] nodeIndices; // a node cell's index within its cluster's nodes
+  private final int[][] clusterNodes;
+  private final int[][] clusterCosts; // n*n steps from node i to node j, or -1 if unreachable
+  private final boolean[] dirty;
+  private boolean anyDirty = true;
+
+  /** Local (within cluster) breadth-first search buffers: */
+  private final int[] localStamps;
+  private final int[] localSteps;
+  private final int[] localParents;
+  private final int[] queue;
+  private int localStamp;
+
+  /** Abstract A* search buffers: */
+  private final int[] searchStamps;
+  private final int[] costs;
+  private final int[] previous;
+  private final int[] closedStamps;
+  private long[] heap = new long[256];
+  private int heapSize;
+  private int searchStamp;
+  private int[] goalCosts = new int[16];
+  private int[] route = new int[64];
+
+  /** Constructs a pathfinder over the model with the default cluster size: */
+  public ClusterPathfinder(GridModel model){ this(model, DEFAULT_CLUSTER_SIZE); }
+
+  /** Constructs a pathfinder over the model, split into clusters of the specified size: */
+  public ClusterPathfinder(GridModel model, int clusterSize){
+    if (clusterSize < 2) throw new IllegalArgumentException("Invalid cluster size: "+clusterSize);
+    this.model = model;
+    this.layout = model.layout;
+    this.clusterSize = clusterSize;
+    this.clusterRows = (layout.rows + clusterSize - 1) / clusterSize;
+    this.clusterCols = (layout.cols + clusterSize - 1) / clusterSize;
+    int size = layout.size();
+    int clusters = clusterRows * clusterCols;
+    this.portalDirs = new byte[size];
+    this.nodeIndices = new short[size];
+    this.clusterNodes = new int[clusters][];
+    this.clusterCosts = new int[clusters][];
+    this.dirty = new boolean[clusters];
+    Arrays.fill(dirty, true);
+    this.localStamps = new int[size];
+    this.localSteps = new int[size];
+    this.localParents = new int[size];
+    this.queue = new int[size];
+    this.searchStamps = new int[size];
+    this.costs = new int[size];
+    this.previous = new int[size];
+    this.closedStamps = new int[size];
+    model.addListener(this::cellChanged);
+  }
+
+  /**
+   * Marks the cluster containing a cell as needing to be rebuilt, after it became blocked or free:
+   */
+  public void cellChanged(int cell){
+    dirty[clusterOf(cell)] = true;
+    anyDirty = true;
+  }
+
+  private int clusterOf(int cell){
+    return (layout.row(cell) / clusterSize) * clusterCols + layout.col(cell) / clusterSize;
+  }
+
+  /** Returns true if a character can step onto the cell: */
+  private boolean canEnter(int cell){ return !model.isBlocked(cell); }
+  /** Returns true if a character can walk through the cell (stepping onto an entrance enters its estate): */
+  private boolean canPass(int cell){ return !model.isBlocked(cell) && !layout.isEntrance(cell); }
+
+  //------------------------------------------------------------------------------------------------
+  // Building the abstract graph
+  //------------------------------------------------------------------------------------------------
+
+  /**
+   * Rebuilds the portals of every dirty cluster, then the nodes and costs of those clusters and their neighbours:
+   */
+  private void rebuild(){
+    if (!anyDirty) return;
+    int clusters = dirty.length;
+    for (int c = 0; c < clusters; c++){
+      if (!dirty[c]) continue;
+      int cr = c / clusterCols, cc = c % clusterCols;
+      if (cc > 0) buildVerticalBorder(cr, cc - 1);
+      if (cc + 1 < clusterCols) buildVerticalBorder(cr, cc);
+      if (cr > 0) buildHorizontalBorder(cr - 1, cc);
+      if (cr + 1 < clusterRows) buildHorizontalBorder(cr, cc);
+    }
+
+    boolean[] renode = new boolean[clusters];
+    for (int c = 0; c < clusters; c++){
+      if (!dirty[c]) continue;
+      int cr = c / clusterCols, cc = c % clusterCols;
+      renode[c] = true;
+      if (cc > 0) renode[c - 1] = true;
+      if (cc + 1 < clusterCols) renode[c + 1] = true;
+      if (cr > 0) renode[c - clusterCols] = true;
+      if (cr + 1 < clusterRows) renode[c + clusterCols] = true;
+    }
+    for (int c = 0; c < clusters; c++){
+      if (renode[c]) buildCluster(c);
+      dirty[c] = false;
+    }
+    anyDirty = false;
+  }
+
+  /**
+   * Places portals on the border between cluster (cr, cc) and the cluster to its right:
+   */
+  private void buildVerticalBorder(int cr, int cc){
+    int col = (cc + 1) * clusterSize - 1;
+    int top = cr * clusterSize;
+    int bottom = Math.min(top + clusterSize, layout.rows);
+    for (int row = top; row < bottom; row++){
+      int cell = layout.index(row, col);
+      portalDirs[cell] &= ~RIGHT;
+      portalDirs[cell + 1] &= ~LEFT;
+      // An entrance on the border can be entered from across it (but not walked out of):
+      if (layout.isEntrance(cell) && canPass(cell + 1)) portalDirs[cell + 1] |= LEFT;
+      if (layout.isEntrance(cell + 1) && canPass(cell)) portalDirs[cell] |= RIGHT;
+    }
+    int runStart = -1;
+    for (int row = top; row <= bottom; row++){
+      boolean open = row < bottom && canPass(layout.index(row, col)) && canPass(layout.index(row, col + 1));
+      if (open && runStart == -1) runStart = row;
+      else if (!open && runStart != -1){
+        for (int r : portalRows(runStart, row - 1)){
+          int cell = layout.index(r, col);
+          portalDirs[cell] |= RIGHT;
+          portalDirs[cell + 1] |= LEFT;
+        }
+        runStart = -1;
+      }
+    }
+  }
+
+  /**
+   * Places portals on the border between cluster (cr, cc) and the cluster below it:
+   */
+  private void buildHorizontalBorder(int cr, int cc){
+    int row = (cr + 1) * clusterSize - 1;
+    int left = cc * clusterSize;
+    int right = Math.min(left + clusterSize, layout.cols);
+    int cols = layout.cols;
+    for (int col = left; col < right; col++){
+      int cell = layout.index(row, col);
+      portalDirs[cell] &= ~DOWN;
+      portalDirs[cell + cols] &= ~UP;
+      if (layout.isEntrance(cell) && canPass(cell + cols)) portalDirs[cell + cols] |= UP;
+      if (layout.isEntrance(cell + cols) && canPass(cell)) portalDirs[cell] |= DOWN;
+    }
+    int runStart = -1;
+    for (int col = left; col <= right; col++){
+      boolean open = col < right && canPass(layout.index(row, col)) && canPass(layout.index(row + 1, col));
+      if (open && runStart == -1) runStart = col;
+      else if (!open && runStart != -1){
+        for (int c : portalRows(runStart, col - 1)){
+          int cell = layout.index(row, c);
+          portalDirs[cell] |= DOWN;
+          portalDirs[cell + cols] |= UP;
+        }
+        runStart = -1;
+      }
+    }
+  }
+
+  /** Returns where to place portals along an open stretch: one in the middle, or one at each end and the middle if it's long. */
+  private static int[] portalRows(int first, int last){
+    if (last - first + 1 >= 6) return new int[]{first, (first + last) / 2, last};
+    return new int[]{(first + last) / 2};
+  }
+
+  /**
+   * Collects a cluster's nodes (portals and entrances) and finds the steps between each pair within the cluster:
+   */
+  private void buildCluster(int c){
+    int top = (c / clusterCols) * clusterSize, left = (c % clusterCols) * clusterSize;
+    int bottom = Math.min(top + clusterSize, layout.rows), right = Math.min(left + clusterSize, layout.cols);
+    int[] nodes = new int[clusterSize * 4];
+    int n = 0;
+    for (int row = top; row < bottom; row++){
+      for (int col = left; col < right; col++){
+        int cell = layout.index(row, col);
+        boolean node = portalDirs[cell] != 0 || (layout.isEntrance(cell) && canEnter(cell));
+        if (!node) continue;
+        if (n == nodes.length) nodes = Arrays.copyOf(nodes, n * 2);
+        nodeIndices[cell] = (short) n;
+        nodes[n++] = cell;
+      }
+    }
+    nodes = Arrays.copyOf(nodes, n);
+
+    int[] cost = new int[n * n];
+    for (int i = 0; i < n; i++){
+      localSearch(nodes[i], c);
+      for (int j = 0; j < n; j++){
+        cost[i * n + j] = localStamps[nodes[j]] == localStamp ? localSteps[nodes[j]] : -1;
+      }
+    }
+    clusterNodes[c] = nodes;
+    clusterCosts[c] = cost;
+  }
+
+  /**
+   * Breadth-first search from a cell, staying within a cluster:
+   */
+  private void localSearch(int source, int c){
+    int top = (c / clusterCols) * clusterSize, left = (c % clusterCols) * clusterSize;
+    localSearch(source, top, left, Math.min(top + clusterSize, layout.rows), Math.min(left + clusterSize, layout.cols));
+  }
+
+  /**
+   * Breadth-first search from a cell, staying within the rows top to bottom-1 and columns left to right-1:
+   */
+  private void localSearch(int source, int top, int left, int bottom, int right){
+    if (++localStamp == 0){
+      Arrays.fill(localStamps, 0);
+      localStamp = 1;
+    }
+    int cols = layout.cols;
+
+    localStamps[source] = localStamp;
+    localSteps[source] = 0;
+    localParents[source] = -1;
+    if (layout.isEntrance(source)) return; // can't walk out through an entrance
+    int head = 0, tail = 0;
+    queue[tail++] = source;
+    while (head < tail){
+      int cell = queue[head++];
+      int row = cell / cols, col = cell % cols;
+      int steps = localSteps[cell] + 1;
+      if (col > left) tail = localVisit(cell - 1, cell, steps, tail);
+      if (col + 1 < right) tail = localVisit(cell + 1, cell, steps, tail);
+      if (row > top) tail = localVisit(cell - cols, cell, steps, tail);
+      if (row + 1 < bottom) tail = localVisit(cell + cols, cell, steps, tail);
+    }
+  }
+
+  private int localVisit(int cell, int from, int steps, int tail){
+    if (localStamps[cell] == localStamp || !canEnter(cell)) return tail;
+    localStamps[cell] = localStamp;
+    localSteps[cell] = steps;
+    localParents[cell] = from;
+    if (layout.isEntrance(cell)) return tail;
+    queue[tail] = cell;
+    return tail + 1;
+  }
+
+  //------------------------------------------------------------------------------------------------
+  // Path queries
+  //------------------------------------------------------------------------------------------------
+
+  /**
+   * Finds a path from the start cell to the goal cell (a free square or an estate entrance) and writes it
+   * into out, from the first step to the goal. Returns its length, or -1 if there is no path.
+   * Paths are near-optimal: they can be slightly longer than the shortest path.
+   */
+  public int path(int start, int goal, int[] out){
+    rebuild();
+    if (start == goal) return 0;
+    if (!canEnter(goal)) return -1;
+
+    // Nearby goals are found exactly by searching a small window around both cells:
+    int rowGap = Math.abs(layout.row(start) - layout.row(goal)), colGap = Math.abs(layout.col(start) - layout.col(goal));
+    if (rowGap + colGap <= clusterSize){
+      int margin = clusterSize / 2;
+      localSearch(start, Math.max(0, Math.min(layout.row(start), layout.row(goal)) - margin),
+              Math.max(0, Math.min(layout.col(start), layout.col(goal)) - margin),
+              Math.min(layout.rows, Math.max(layout.row(start), layout.row(goal)) + margin + 1),
+              Math.min(layout.cols, Math.max(layout.col(start), layout.col(goal)) + margin + 1));
+      if (localStamps[goal] == localStamp){
+        int steps = localSteps[goal];
+        for (int cell = goal, k = steps - 1; k >= 0; cell = localParents[cell], k--) out[k] = cell;
+        return steps;
+      }
+    }
+    int startCluster = clusterOf(start), goalCluster = clusterOf(goal);
+
+    if (++searchStamp == 0){
+      Arrays.fill(searchStamps, 0);
+      Arrays.fill(closedStamps, 0);
+      searchStamp = 1;
+    }
+    heapSize = 0;
+
+    // Connect the goal to the nodes of its cluster (steps are the same in both directions, except into entrances):
+    int[] goalNodes = clusterNodes[goalCluster];
+    if (goalCosts.length < goalNodes.length) goalCosts = new int[goalNodes.length * 2];
+    if (layout.isEntrance(goal)){
+      // Entrances can only be stepped onto, so search from each node towards it:
+      for (int i = 0; i < goalNodes.length; i++){
+        goalCosts[i] = goalNodes[i] == goal ? 0 : clusterCosts[goalCluster][i * goalNodes.length + nodeIndices[goal]];
+      }
+    }
+    else {
+      localSearch(goal, goalCluster);
+      for (int i = 0; i < goalNodes.length; i++){
+        int node = goalNodes[i];
+        goalCosts[i] = localStamps[node] == localStamp && !layout.isEntrance(node) ? localSteps[node] : -1;
+        if (node == goal) goalCosts[i] = 0;
+      }
+    }
+
+    // Connect the start to the nodes of its cluster, and directly to the goal if it's in the same cluster:
+    localSearch(start, startCluster);
+    if (startCluster == goalCluster && localStamps[goal] == localStamp) relax(goal, localSteps[goal], start, goal);
+    int[] startNodes = clusterNodes[startCluster];
+    for (int i = 0; i < startNodes.length; i++){
+      int node = startNodes[i];
+      if (localStamps[node] == localStamp) relax(node, localSteps[node], start, goal);
+    }
+
+    // A* over the abstract graph:
+    while (heapSize > 0){
+      int cell = (int) pop();
+      if (closedStamps[cell] == searchStamp) continue;
+      closedStamps[cell] = searchStamp;
+      if (cell == goal) break;
+      if (layout.isEntrance(cell)) continue; // entrances (other than the goal) are dead ends
+      int g = costs[cell];
+      int c = clusterOf(cell);
+      int[] nodes = clusterNodes[c];
+      int n = nodes.length;
+      int i = nodeIndices[cell];
+
+      // Edges within the cluster:
+      for (int j = 0; j < n; j++){
+        int cost = clusterCosts[c][i * n + j];
+        if (cost > 0) relax(nodes[j], g + cost, cell, goal);
+      }
+      // Edge to the goal:
+      if (c == goalCluster && goalCosts[i] >= 0) relax(goal, g + goalCosts[i], cell, goal);
+      // Edges across portals:
+      int dirs = portalDirs[cell];
+      if ((dirs & LEFT) != 0) relax(cell - 1, g + 1, cell, goal);
+      if ((dirs & RIGHT) != 0) relax(cell + 1, g + 1, cell, goal);
+      if ((dirs & UP) != 0) relax(cell - layout.cols, g + 1, cell, goal);
+      if ((dirs & DOWN) != 0) relax(cell + layout.cols, g + 1, cell, goal);
+    }
+    if (closedStamps[goal] != searchStamp) return -1;
+
+    // Collect the abstract route from the goal back to the start:
+    int legs = 0;
+    for (int cell = goal; cell != start; cell = previous[cell]){
+      if (legs == route.length) route = Arrays.copyOf(route, legs * 2);
+      route[legs++] = cell;
+    }
+
+    // Refine each leg with a local search, in order from the start:
+    int length = 0;
+    int from = start;
+    for (int i = legs - 1; i >= 0; i--){
+      int to = route[i];
+      if (clusterOf(from) != clusterOf(to)) out[length++] = to; // a single step across a portal
+      else {
+        localSearch(from, clusterOf(from));
+        int steps = localSteps[to];
+        for (int cell = to, k = length + steps - 1; k >= length; cell = localParents[cell], k--) out[k] = cell;
+        length += steps;
+      }
+      from = to;
+    }
+    return length;
+  }
+
+  /** Lowers the cost of reaching a node if this way is cheaper, and queues it: */
+  private void relax(int cell, int cost, int from, int goal){
+    if (searchStamps[cell] == searchStamp && costs[cell] <= cost) return;
+    searchStamps[cell] = searchStamp;
+    costs[cell] = cost;
+    previous[cell] = from;
+    int h = Math.abs(layout.row(cell) - layout.row(goal)) + Math.abs(layout.col(cell) - layout.col(goal));
+    push(((long) (cost + h) << 32) | cell);
+  }
+
+  /** Binary min-heap of (priority << 32 | cell) entries: */
+  private void push(long entry){
+    if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+    int i = heapSize++;
+    while (i > 0){
+      int parent = (i - 1) >>> 1;
+      if (heap[parent] <= entry) break;
+      heap[i] = heap[parent];
+      i = parent;
+    }
+    heap[i] = entry;
+  }
+
+  private long pop(){
+    long top = heap[0];
+    long last = heap[--heapSize];
+    int i = 0;
+    while (true){
+      int child = 2 * i + 1;
+      if (child >= heapSize) break;
+      if (child + 1 < heapSize && heap[child + 1] < heap[child]) child++;
+      if (heap[child] >= last) break;
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = last;
+    return top & 0xFFFFFFFFL;
+  }
+
+  /** Returns the number of nodes in the abstract graph (after any pending rebuild). */
+  public int nodeCount(){
+    rebuild();
+    int count = 0;
+    for (int[] nodes : clusterNodes) count += nodes.length;
+    return count;
+  }
+
+  /**
+   * Checks the pathfinder against breadth-first search on a generated map, and reports how fast it is:
+   */
+  public static void main(String... args){
+    if (args.length < 4){
+      System.out.println("Usage: java ClusterPathfinder ROWS COLS ESTATES DENSITY [--seed S] [--queries N]");
+      return;
+    }
+    MapGenerator generator = new MapGenerator(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+            Integer.parseInt(args[2]), Double.parseDouble(args[3]));
+    long seed = new SplittableRandom().nextLong();
+    int queries = 1000;
+    for (int i = 4; i < args.length; i++){
+      String value = i + 1 < args.length ? args[i + 1] : null;
+      switch (args[i]){
+        case "--seed": seed = Long.parseLong(value); i++; break;
+        case "--queries": queries = Integer.parseInt(value); i++; break;
+        default: throw new IllegalArgumentException("Unrecognized argument: "+args[i]);
+      }
+    }
+
+    SplittableRandom random = new SplittableRandom(seed);
+    MapLayout layout = generator.generate(random);
+    Estate[] estates = new Estate[layout.estateCount()];
+    for (int id = 0; id < estates.length; id++) estates[id] = new Estate("Estate "+id, layout.estateSymbol(id), id);
+    GridModel model = new GridModel(layout, new GameCharacter[0], estates);
+    ClusterPathfinder pathfinder = new ClusterPathfinder(model);
+    Reachability bfs = new Reachability(model);
+    int[] out = new int[layout.size()];
+
+    int checked = 0, invalid = 0, missed = 0;
+    long steps = 0, shortest = 0, nanos = 0;
+    System.out.printf("%dx%d map, %d abstract nodes%n", layout.rows, layout.cols, pathfinder.nodeCount());
+    while (checked < queries){
+      int start = random.nextInt(layout.size()), goal = random.nextInt(layout.size());
+      if (model.isBlocked(start) || layout.isEntrance(start) || model.isBlocked(goal)) continue;
+      bfs.fromCell(start, Short.MAX_VALUE - 1);
+      int fewest = goal == start ? -1 : fewestSteps(layout, bfs, start, goal);
+      if (fewest == -1) continue;
+      checked++;
+      long begin = System.nanoTime();
+      int length = pathfinder.path(start, goal, out);
+      nanos += System.nanoTime() - begin;
+      if (length == -1){
+        missed++;
+        continue;
+      }
+      // Each step must be to a free neighbouring square, only entering an Estate at the goal:
+      boolean valid = out[length - 1] == goal;
+      for (int i = 0, from = start; valid && i < length; from = out[i++]){
+        int to = out[i];
+        valid = Math.abs(layout.row(from) - layout.row(to)) + Math.abs(layout.col(from) - layout.col(to)) == 1
+                && !model.isBlocked(to) && (to == goal || !layout.isEntrance(to));
+      }
+      if (!valid || length < fewest) invalid++;
+      steps += length;
+      shortest += fewest;
+    }
+    System.out.printf("%d queries: %d invalid, %d unfound, %.2f%% longer than the shortest paths, %.1f us per query%n",
+            checked, invalid, missed, shortest == 0 ? 0 : 100.0 * (steps - shortest) / shortest, nanos / 1e3 / checked);
+  }
+
+  /**
+   * Returns the fewest steps from the start to the goal found by the breadth-first search from the start,
+   * or -1 if it can't be reached (an entrance being entered from a square next to it):
+   */
+  private static int fewestSteps(MapLayout layout, Reachability bfs, int start, int goal){
+    if (!layout.isEntrance(goal)) return bfs.isReachable(goal) ? bfs.steps(goal) : -1;
+    int fewest = -1;
+    int row = layout.row(goal), col = layout.col(goal);
+    int[] neighbours = {row > 0 ? goal - layout.cols : -1, row + 1 < layout.rows ? goal + layout.cols : -1,
+            col > 0 ? goal - 1 : -1, col + 1 < layout.cols ? goal + 1 : -1};
+    for (int cell : neighbours){
+      int steps = cell == start ? 0 : cell != -1 && bfs.isReachable(cell) ? bfs.steps(cell) : -1;
+      if (steps != -1 && (fewest == -1 || steps + 1 < fewest)) fewest = steps + 1;
+    }
+    return fewest;
+  }
+}
@@ -1,56 +1,335 @@
-import java.util.*;
-
-/**
- * Computer is a subclass of Player describing an autonomous Player.
- * Upon its turn it always ends turn.
- * When refuting, it always chooses a random Card to reveal (if it has one).
- */
-public class Computer extends Player {
-
-    /**
-     * Constructs a new Computer with a specified number and character to control.
-     */
-    public Computer(int number, GameCharacter c) {
-        super(number, c);
-    }
-
-    /**
-     * Just ends turn upon it starting.
-     */
-    @Override
-    public void startTurn(Scanner input, Player[] players, int currentPlayerIndex,
-                          Map<String, Card> allCards, Set<Card> solution, Square[][] grid){
-        System.out.println("Computer's turn ("+character+"):");
-        Board.wait(2000);
-        System.out.println("Computer has ended turn.");
-        Board.wait(2000);
-    }
-
-    /**
-     * Returns false if Computer has no guess cards in their hand.
-     * Else, Computer chooses a random one to reveal and it returns true.
-     */
-    @Override
-    protected boolean refute(Scanner input, Set<Card> guess, Player original){
-        // Add guessed Cards to options if they're in hand:
-        List<Card> options = new ArrayList<>();
-        for (Card c : guess){
-            if (hand.contains(c)) options.add(c);
-        }
-
-        // If none of the cards were found:
-        if (options.isEmpty()){
-            System.out.println("Computer ("+character+") has no refutation cards.");
-            return false;
-        }
-
-        // If they do have options, let them choose a random one:
-        System.out.println("Computer ("+character+") has refutation card(s)!\n");
-
-
-        Board.wait(1000);
-        System.out.println("Computer revealed: "+options.get((int)(Math.random() % options.size())));
-        Board.wait(1000);
-        return true;
-    }
-}
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * Computer is a subclass of Player describing an autonomous Player.
+ * It keeps a Deduction of everything it has seen, and on its turn it either solves the murder
+ * (once the Deduction has worked out the solution), guesses in an Estate that might be in the solution,
+ * or heads for the closest such Estate.
+ * When refuting, it reveals as little as it can: a Card it has already shown the guesser if it has one,
+ * else the one it has shown the most other Players, so as few of its Cards as possible are ever revealed.
+ */
+public class Computer extends Player {
+
+    /** Buffers for the path the Computer moves along, and the route it follows across large maps: */
+    private int[] path;
+    private int[] route;
+    /** The Cards the Computer has shown each seat when refuting (by seat): */
+    private long[] shown;
+
+    /**
+     * Constructs a new Computer with a specified number and character to control.
+     */
+    public Computer(int number, GameCharacter c) {
+        super(number, c);
+    }
+
+    /**
+     * Solves the murder if it can, else guesses or moves towards an Estate to guess in.
+     * An eliminated Computer just ends its turn.
+     */
+    @Override
+    public void startTurn(Board board){
+        board.getOut().println("Computer's turn ("+character+"):");
+        board.pause(2000);
+        takeTurn(board);
+    }
+
+    /**
+     * Takes the Computer's turn once it has been announced:
+     */
+    protected void takeTurn(Board board){
+        PrintStream out = board.getOut();
+        Deduction d = getDeduction(board);
+
+        if (!solveAttempted()){
+            if (d.isSolved()){
+                solve(board, board.getRegistry().set(d.solution()));
+                return;
+            }
+            // Guess in the current Estate if it might be in the solution, else head for one that might be:
+            if (character.inEstate() && (d.candidates() & CardSet.bit(character.getEstate())) != 0){
+                guess(board);
+                return;
+            }
+            long estates = d.candidates() & board.getRegistry().all(CardRegistry.Category.ESTATE).bits;
+            if (moveTowards(board, estates, plan(board, estates)) && !solveAttempted()){
+                guess(board);
+                return;
+            }
+        }
+        out.println("Computer has ended turn.");
+        board.pause(2000);
+    }
+
+    /**
+     * Leaves the current Estate (if in one), rolls and moves towards the closest of the Estates (a bitmask of Cards).
+     * Returns true if it entered one.
+     */
+    protected boolean moveTowards(Board board, long estates){ return moveTowards(board, estates, estates); }
+
+    /**
+     * Leaves the current Estate (if in one), rolls and enters the closest of the Estates (a bitmask of Cards) if it can,
+     * else moves towards the closest of those it's heading for (some of the Estates). Returns true if it entered one.
+     */
+    protected boolean moveTowards(Board board, long estates, long heading){
+        PrintStream out = board.getOut();
+        GridModel model = board.getModel();
+        MapLayout layout = model.layout;
+        DistanceFields distances = layout.distances();
+
+        // Leave by the exit closest to one of the Estates:
+        if (character.inEstate()){
+            Estate e = character.getEstate();
+            int id = model.estateId(e);
+            int best = -1, bestSteps = DistanceFields.UNREACHABLE;
+            for (int mask = e.getExitMask(); mask != 0; mask &= mask - 1){
+                int exit = Integer.numberOfTrailingZeros(mask);
+                int outer = layout.outerCell(layout.entranceCell(id, exit));
+                int closest = nearest(board, outer, heading);
+                int steps = closest == -1 ? DistanceFields.UNREACHABLE : distances.steps(outer, closest, model);
+                if (best == -1 || steps < bestSteps){
+                    best = exit;
+                    bestSteps = steps;
+                }
+            }
+            if (best == -1) return false; // every exit is blocked
+            exitVia(board, e.getEntrance(best));
+            out.println("Computer left "+e+".");
+        }
+
+        int roll = roll(board);
+        Square current = character.getSquare();
+        int start = layout.index(current.row, current.col);
+        Reachability r = board.getReachability();
+        r.fromCell(start, roll);
+
+        // Enter the closest of the Estates if one can be reached this turn:
+        int goal = -1;
+        int fewest = Integer.MAX_VALUE;
+        for (long b = estates; b != 0; b &= b - 1){
+            int id = model.estateId((Estate) board.getCard(Long.numberOfTrailingZeros(b)));
+            if (r.canEnter(id) && r.estateSteps(id) < fewest){
+                goal = r.estateEntrance(id);
+                fewest = r.estateSteps(id);
+            }
+        }
+
+        // Otherwise, move along the route to the closest one (on large maps), or to the reachable square closest to it:
+        int id = goal == -1 ? nearest(board, start, heading) : -1;
+        if (id != -1 && board.getPathfinder() != null) goal = alongRoute(board, start, id, roll);
+        if (goal == -1){
+            int target = DistanceFields.UNREACHABLE;
+            short[] field = null;
+            if (id != -1){
+                field = distances.field(id);
+                target = field[start];
+            }
+            for (int i = 0; field != null && i < r.count(); i++){
+                if (field[r.cell(i)] < target){
+                    goal = r.cell(i);
+                    target = field[goal];
+                }
+            }
+        }
+        if (goal == -1) return false;
+
+        if (path == null) path = new int[layout.size()];
+        int length = r.path(goal, path);
+        for (int i = 0; i < length; i++) moveTo(board, layout.row(path[i]), layout.col(path[i]));
+        board.repaint();
+        if (!character.inEstate()) return false;
+        out.println("Computer entered "+character.getEstate()+".");
+        return true;
+    }
+
+    /**
+     * Returns the furthest square along the shortest route to the Estate with the map id (found by the Board's pathfinder,
+     * around the characters in the way) that can be reached with the roll, or -1 if there's no route:
+     */
+    private int alongRoute(Board board, int start, int id, int roll){
+        MapLayout layout = board.getModel().layout;
+        ClusterPathfinder pathfinder = board.getPathfinder();
+        if (route == null) route = new int[layout.size()];
+        if (path == null) path = new int[layout.size()];
+        int length = -1;
+        for (int i = 0; i < layout.entranceCount(id); i++){
+            int steps = pathfinder.path(start, layout.entranceCell(id, i), path);
+            if (steps != -1 && (length == -1 || steps < length)){
+                System.arraycopy(path, 0, route, 0, steps);
+                length = steps;
+            }
+        }
+        Reachability r = board.getReachability();
+        for (int i = Math.min(length, roll) - 1; i >= 0; i--){
+            if (r.isReachable(route[i])) return route[i];
+        }
+        return -1;
+    }
+
+    /**
+     * Chooses which of the Estates (a bitmask of Cards) to head for, planning two visits ahead with the TurnTables:
+     * the one with the fewest expected turns to enter it, then to enter the closest of the others from there.
+     * Returns it as a bitmask (or the Estates unchanged if there's only one, or none can be reached).
+     */
+    private long plan(Board board, long estates){
+        if (Long.bitCount(estates) < 2) return estates;
+        GridModel model = board.getModel();
+        TurnTables tables = board.getTurnTables();
+        int from = character.inEstate() ? model.estateId(character.getEstate()) : -1;
+        int cell = from != -1 ? -1 : model.layout.index(character.getSquare().row, character.getSquare().col);
+        long best = estates;
+        double fewest = Double.POSITIVE_INFINITY;
+        for (long a = estates; a != 0; a &= a - 1){
+            long first = a & -a;
+            int id = model.estateId((Estate) board.getCard(Long.numberOfTrailingZeros(first)));
+            double turns = from != -1 ? tables.expectedTurnsBetween(from, id, model) : tables.expectedTurns(cell, id);
+            double next = Double.POSITIVE_INFINITY;
+            for (long b = estates & ~first; b != 0; b &= b - 1){
+                int other = model.estateId((Estate) board.getCard(Long.numberOfTrailingZeros(b)));
+                next = Math.min(next, tables.expectedTurnsBetween(id, other, model));
+            }
+            if (turns + next < fewest){
+                best = first;
+                fewest = turns + next;
+            }
+        }
+        return best;
+    }
+
+    /** Rolls the dice to move: */
+    protected int roll(Board board){
+        int roll = board.getDice().roll();
+        board.getOut().println("Computer rolled: "+roll+".");
+        return roll;
+    }
+
+    /** Returns the map id of the closest of the Estates (a bitmask of Cards) to the cell, or -1 if none can be reached: */
+    private static int nearest(Board board, int cell, long estates){
+        GridModel model = board.getModel();
+        int best = -1, bestSteps = DistanceFields.UNREACHABLE;
+        for (long b = estates; b != 0; b &= b - 1){
+            int id = model.estateId((Estate) board.getCard(Long.numberOfTrailingZeros(b)));
+            int steps = model.layout.distances().steps(cell, id, model);
+            if (steps < bestSteps){
+                best = id;
+                bestSteps = steps;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Guesses in the current Estate, choosing the GameCharacter and Weapon the game's GuessAdvisor recommends.
+     * Without an advisor, it picks ones that might be in the solution
+     * (the one that is, once a category is worked out, so the guess only asks about the rest):
+     */
+    protected void guess(Board board){
+        CardRegistry registry = board.getRegistry();
+        GuessAdvisor advisor = board.getAdvisor();
+        GuessAdvisor.Advice advice = advisor == null ? null
+                : advisor.recommend(deduction, registry, character.getEstate(), board.getRandom().nextLong());
+        GameCharacter c = advice != null ? advice.character : (GameCharacter) choose(board, registry.all(CardRegistry.Category.CHARACTER));
+        Weapon w = advice != null ? advice.weapon : (Weapon) choose(board, registry.all(CardRegistry.Category.WEAPON));
+        guess(board, c, w);
+    }
+
+    /**
+     * Guesses the GameCharacter and Weapon in the current Estate:
+     */
+    protected void guess(Board board, GameCharacter c, Weapon w){
+        PrintStream out = board.getOut();
+        out.println("Computer guesses: "+c+", "+character.getEstate()+", "+w+".");
+        board.pause(1000);
+        Card shown = suggest(board, c, w);
+        out.println(shown == null ? "No one could refute the guess." : "Computer was shown a card.");
+        board.pause(1000);
+    }
+
+    /**
+     * Picks a random Card of the category that might be in the solution, but isn't known to be
+     * (or the one that is, if it's known):
+     */
+    private Card choose(Board board, CardSet category){
+        CardSet unknown = category.and(board.getRegistry().set(deduction.candidates() & ~deduction.solution()));
+        if (unknown.isEmpty()) unknown = category.and(board.getRegistry().set(deduction.candidates()));
+        return unknown.get(board.getRandom().nextInt(unknown.size()));
+    }
+
+    /**
+     * Accuses the Cards of being the solution (e.g. the one worked out by the Computer's Deduction):
+     */
+    protected void solve(Board board, CardSet prediction){
+        PrintStream out = board.getOut();
+        out.println("Computer attempts to solve the case: "+prediction+".");
+        board.pause(2000);
+        if (accuse(board, prediction)){
+            out.println("Computer's prediction was right!");
+            board.endGame(true);
+        }
+        else {
+            out.println("Computer's prediction was wrong. It has been eliminated.");
+            if (board.allPlayersEliminated()) board.endGame(false);
+        }
+    }
+
+    /**
+     * Returns null if Computer has no guess cards in their hand.
+     * Else, Computer chooses one to reveal (see chooseShown) and returns it.
+     */
+    @Override
+    protected Card refute(Board board, CardSet guess, Player original){
+        // The guessed Cards in hand are the options:
+        CardSet options = hand.and(guess);
+
+        // If none of the cards were found:
+        PrintStream out = board.getOut();
+        if (options.isEmpty()){
+            out.println("Computer ("+character+") has no refutation cards.");
+            return null;
+        }
+
+        // If they do have options, show one the guesser has already seen, else the one shown to the most seats:
+        out.println("Computer ("+character+") has refutation card(s)!\n");
+
+        board.pause(1000);
+        Card c = board.getCard(Long.numberOfTrailingZeros(chooseShown(board, options.bits, original.character.index)));
+        out.println("Computer revealed: "+c);
+        board.pause(1000);
+        return c;
+    }
+
+    /**
+     * Chooses which of the Cards (a bitmask) to show the guesser's seat, and remembers it was shown:
+     * one already shown to the guesser (who learns nothing new) if there is one, else the one shown to the most seats
+     * (so the others can't learn any more of the hand from guesses they see refuted), breaking ties at random.
+     */
+    private long chooseShown(Board board, long options, int guesser){
+        if (shown == null) shown = new long[board.getPlayers().length];
+        long choice = options & shown[guesser];
+        if (choice == 0){
+            int most = -1, ties = 0;
+            for (long b = options; b != 0; b &= b - 1){
+                long card = b & -b;
+                int seats = 0;
+                for (long s : shown) seats += (s & card) != 0 ? 1 : 0;
+                if (seats > most){
+                    most = seats;
+                    ties = 0;
+                }
+                if (seats == most && (++ties == 1 || board.getRandom().nextInt(ties) == 0)) choice = card;
+            }
+        }
+        choice &= -choice;
+        recordShown(board, choice, guesser);
+        return choice;
+    }
+
+    /**
+     * Remembers that the Cards (a bitmask) were shown to the guesser's seat, e.g. when a subclass chose them:
+     */
+    protected void recordShown(Board board, long cards, int guesser){
+        if (shown == null) shown = new long[board.getPlayers().length];
+        shown[guesser] |= cards;
+    }
+}
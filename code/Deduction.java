@@ -0,0 +1,231 @@
+import java.util.Arrays;
+
+/**
+ * Deduction is what one Player can work out about where the Cards are, from everything they have seen:
+ * their own hand, each guess, who refuted it and who couldn't, and any Card revealed to them.
+ *
+ * For each seat (index into the Board's players) it keeps the Cards the seat is known to hold and the
+ * Cards it might hold, along with the Cards that might be in the solution, all as CardSet bitmasks.
+ * Refutations that weren't seen become constraints ("seat 2 holds one of these"), and every observation
+ * is propagated to a fixed point, e.g. once seat 2 is known to lack two of the three Cards it refuted with,
+ * it must hold the third. Since everything is a bit operation, each observation takes microseconds.
+ *
+ * Each instance should only be used by one thread at a time.
+ */
+public final class Deduction {
+
+  /** The seat whose point of view this is: */
+  public final int self;
+  private final int seats;
+  private final long all;
+  /** The Cards of each category (GameCharacters, Estates, Weapons), one of each being in the solution: */
+  private final long[] categories = new long[3];
+  /** The number of Cards dealt to each seat, which everyone can see: */
+  private final int[] handSizes;
+
+  /** Cards each seat is known to hold, and might hold (known ones included): */
+  private final long[] known;
+  private final long[] possible;
+  /** Cards that might be in the solution, and those known to be: */
+  private long candidates;
+  private long solution;
+
+  /** Constraints that a seat holds at least one of some Cards (from refutations that weren't seen): */
+  private long[] clauseCards = new long[16];
+  private int[] clauseSeats = new int[16];
+  private int clauseCount;
+
+  /**
+   * Constructs the Deduction of the player at a seat from their hand, given the size of every seat's hand:
+   */
+  public Deduction(CardRegistry registry, int self, CardSet hand, int[] handSizes){
+    this.self = self;
+    this.seats = handSizes.length;
+    this.all = registry.all().bits;
+    for (CardRegistry.Category category : CardRegistry.Category.values()){
+      categories[category.ordinal()] = registry.all(category).bits;
+    }
+    this.handSizes = handSizes.clone();
+    this.known = new long[seats];
+    this.possible = new long[seats];
+    for (int s = 0; s < seats; s++) possible[s] = all;
+    candidates = all;
+    holds(self, hand.bits);
+    lacks(self, all & ~hand.bits);
+  }
+
+  /**
+   * Records everything that can be seen of a guess: the seats between the guesser and the refuter couldn't refute,
+   * and the refuter (-1 if nobody) showed the Card shown, or one of the guessed Cards if it wasn't seen (shown being null).
+   */
+  public void observeGuess(int guesser, long guess, int refuter, Card shown){
+    for (int s = (guesser + 1) % seats; s != guesser && s != refuter; s = (s + 1) % seats) lacks(s, guess);
+    if (refuter == -1) return;
+    if (shown != null) holds(refuter, CardSet.bit(shown));
+    else holdsOneOf(refuter, guess);
+  }
+
+  /** Records that a seat holds every one of the Cards: */
+  public void holds(int seat, long cards){
+    known[seat] |= cards;
+    propagate();
+  }
+
+  /** Records that a seat holds none of the Cards: */
+  public void lacks(int seat, long cards){
+    possible[seat] &= ~cards;
+    propagate();
+  }
+
+  /** Records that a seat holds at least one of the Cards: */
+  public void holdsOneOf(int seat, long cards){
+    if (clauseCount == clauseCards.length){
+      clauseCards = Arrays.copyOf(clauseCards, clauseCount * 2);
+      clauseSeats = Arrays.copyOf(clauseSeats, clauseCount * 2);
+    }
+    clauseCards[clauseCount] = cards;
+    clauseSeats[clauseCount++] = seat;
+    propagate();
+  }
+
+  /**
+   * Applies every rule until nothing more can be worked out:
+   */
+  private void propagate(){
+    boolean changed = true;
+    while (changed){
+      changed = false;
+
+      // A seat holding all its Cards can't hold any others, and a seat that might only hold as many as it has holds them:
+      long held = 0;
+      for (int s = 0; s < seats; s++){
+        possible[s] |= known[s];
+        int count = Long.bitCount(known[s]);
+        if (count == handSizes[s] && possible[s] != known[s]){
+          possible[s] = known[s];
+          changed = true;
+        }
+        else if (count < handSizes[s] && Long.bitCount(possible[s]) == handSizes[s]){
+          known[s] = possible[s];
+          changed = true;
+        }
+        held |= known[s];
+      }
+
+      // A held Card isn't in anyone else's hand, nor in the solution:
+      for (int s = 0; s < seats; s++){
+        long p = possible[s] & ~(held & ~known[s]);
+        if (p != possible[s]){
+          possible[s] = p;
+          changed = true;
+        }
+      }
+      candidates &= ~held;
+
+      // Constraints are satisfied once a Card in them is known to be held, and settled once only one is possible:
+      for (int i = 0; i < clauseCount; i++){
+        int s = clauseSeats[i];
+        long cards = clauseCards[i] & possible[s];
+        if ((cards & known[s]) == 0 && Long.bitCount(cards) > 1){
+          clauseCards[i] = cards;
+          continue;
+        }
+        if (cards == 0) throw new IllegalStateException("Seat "+s+" refuted a guess without holding any of its cards");
+        if ((cards & known[s]) == 0){
+          known[s] |= cards;
+          changed = true;
+        }
+        clauseCards[i] = clauseCards[--clauseCount];
+        clauseSeats[i--] = clauseSeats[clauseCount];
+      }
+
+      // A Card nobody can hold is in the solution, and a category with one candidate left has it in the solution:
+      long anywhere = 0;
+      for (int s = 0; s < seats; s++) anywhere |= possible[s];
+      solution |= all & ~anywhere;
+      for (long category : categories){
+        long inSolution = solution & category;
+        long left = candidates & category;
+        if (inSolution != 0 && left != inSolution){
+          candidates = (candidates & ~category) | inSolution; // the rest of the category is held by someone
+          changed = true;
+        }
+        else if (inSolution == 0 && Long.bitCount(left) == 1){
+          solution |= left;
+          changed = true;
+        }
+      }
+
+      // A Card in the solution isn't in anyone's hand:
+      for (int s = 0; s < seats; s++){
+        if ((possible[s] & solution) != 0){
+          possible[s] &= ~solution;
+          changed = true;
+        }
+      }
+
+      // A Card that isn't in the solution and can only be in one hand is in that hand:
+      for (long b = all & ~candidates & ~held; b != 0; b &= b - 1){
+        long card = b & -b;
+        int holder = -1;
+        for (int s = 0; s < seats; s++){
+          if ((possible[s] & card) == 0) continue;
+          holder = holder == -1 ? s : -2;
+        }
+        if (holder >= 0){
+          known[holder] |= card;
+          changed = true;
+        }
+      }
+    }
+  }
+
+  /** Returns the number of seats, and the number of Cards dealt to a seat: */
+  public int seats(){ return seats; }
+  public int handSize(int seat){ return handSizes[seat]; }
+  /** Returns every Card, and the Cards of a category: */
+  public long all(){ return all; }
+  public long category(CardRegistry.Category category){ return categories[category.ordinal()]; }
+
+  /** Returns the number of unsettled "holds one of" constraints, and each one's seat and Cards: */
+  public int constraintCount(){ return clauseCount; }
+  public int constraintSeat(int i){ return clauseSeats[i]; }
+  public long constraintCards(int i){ return clauseCards[i]; }
+
+  /** Returns the Cards a seat is known to hold, and might hold: */
+  public long known(int seat){ return known[seat]; }
+  public long possible(int seat){ return possible[seat]; }
+
+  /** Returns the Cards that might be in the solution, and those known to be: */
+  public long candidates(){ return candidates; }
+  public long solution(){ return solution; }
+
+  /**
+   * Returns a hash of everything worked out so far, which changes whenever something more is
+   * (e.g. to tell whether a search was made with what is known now):
+   */
+  public long fingerprint(){
+    long h = mix(candidates) ^ solution;
+    for (int s = 0; s < seats; s++) h = mix(mix(h ^ known[s]) ^ possible[s]);
+    for (int i = 0; i < clauseCount; i++) h = mix(h ^ clauseCards[i] ^ (long) clauseSeats[i] << 58);
+    return h;
+  }
+
+  /** Scrambles the bits of a long (the finalizer of SplittableRandom): */
+  private static long mix(long z){
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /** Returns true once the whole solution is known: */
+  public boolean isSolved(){ return Long.bitCount(solution) == categories.length; }
+
+  /** Returns the seat known to hold a Card, or -1 if that isn't known: */
+  public int holder(Card c){
+    for (int s = 0; s < seats; s++){
+      if ((known[s] & CardSet.bit(c)) != 0) return s;
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,42 @@
+import java.util.SplittableRandom;
+
+/**
+ * Dice rolls the number of moves a Player gets on their turn.
+ * The standard dice are two six-sided dice (2 to 12), but other dice can be plugged into a Board,
+ * such as fixed rolls for tests.
+ * Every Dice also describes the probability of each total, so bots can plan around it.
+ */
+public interface Dice {
+
+  /** Rolls the dice, returning the number of moves. */
+  int roll();
+
+  /** Returns the probability of rolling each total, indexed by total. */
+  double[] distribution();
+
+  /** Returns the probability of each total of two six-sided dice (indexed by total, so 0 and 1 are impossible). */
+  static double[] twoD6Distribution(){
+    return new double[]{0, 0, 1/36.0, 2/36.0, 3/36.0, 4/36.0, 5/36.0, 6/36.0, 5/36.0, 4/36.0, 3/36.0, 2/36.0, 1/36.0};
+  }
+
+  /** Returns two six-sided dice rolled using the specified random source (e.g. seeded by the game). */
+  static Dice twoD6(SplittableRandom random){
+    return new Dice(){
+      public int roll(){ return random.nextInt(1, 7) + random.nextInt(1, 7); }
+      public double[] distribution(){ return twoD6Distribution(); }
+    };
+  }
+
+  /** Returns dice that always roll the specified total (e.g. for tests, or Tournament's --roll). */
+  static Dice fixed(int total){
+    if (total < 0) throw new IllegalArgumentException("Invalid roll: "+total);
+    return new Dice(){
+      public int roll(){ return total; }
+      public double[] distribution(){
+        double[] d = new double[total + 1];
+        d[total] = 1;
+        return d;
+      }
+    };
+  }
+}
@@ -0,0 +1,128 @@
+import java.util.Arrays;
+
+/**
+ * DistanceFields holds, for every Estate on a map, the fewest steps from every cell to enter
+ * that Estate through one of its entrances, ignoring GameCharacters.
+ * Since the map only changes as characters move, the fields are computed once per MapLayout
+ * and shared, turning "steps to Villa Celia" and "closest estate" into array lookups.
+ *
+ * A cheap correction is also provided for when characters block the way.
+ */
+public final class DistanceFields {
+
+  /** The distance of a cell that can't reach an Estate. */
+  public static final short UNREACHABLE = Short.MAX_VALUE;
+
+  public final MapLayout layout;
+  /** Steps from each cell to enter each Estate, indexed by estate id then cell. */
+  private final short[][] fields;
+  /** The closest Estate to each cell and the steps to enter it (-1 and UNREACHABLE if there isn't one). */
+  private final byte[] nearestIds;
+  private final short[] nearestSteps;
+
+  /** Computes the distance fields of the specified map: */
+  public DistanceFields(MapLayout layout){
+    this.layout = layout;
+    int size = layout.size();
+    this.fields = new short[layout.estateCount()][];
+    this.nearestIds = new byte[size];
+    this.nearestSteps = new short[size];
+    Arrays.fill(nearestIds, (byte) -1);
+    Arrays.fill(nearestSteps, UNREACHABLE);
+
+    int[] queue = new int[size];
+    for (int id = 0; id < fields.length; id++){
+      short[] field = compute(id, queue);
+      fields[id] = field;
+      for (int cell = 0; cell < size; cell++){
+        if (field[cell] < nearestSteps[cell]){
+          nearestSteps[cell] = field[cell];
+          nearestIds[cell] = (byte) id;
+        }
+      }
+    }
+  }
+
+  /**
+   * Breadth-first search outwards from an Estate's entrances over squares that can be walked through:
+   * (Other estates' entrances can't be walked through, since stepping on one enters that estate).
+   */
+  private short[] compute(int id, int[] queue){
+    short[] field = new short[layout.size()];
+    Arrays.fill(field, UNREACHABLE);
+    int head = 0, tail = 0;
+    for (int i = 0; i < layout.entranceCount(id); i++){
+      int cell = layout.entranceCell(id, i);
+      field[cell] = 0;
+      queue[tail++] = cell;
+    }
+
+    int cols = layout.cols;
+    while (head < tail){
+      int cell = queue[head++];
+      short next = (short) (field[cell] + 1);
+      int col = cell % cols;
+      if (col > 0) tail = visit(field, queue, tail, cell - 1, next);
+      if (col + 1 < cols) tail = visit(field, queue, tail, cell + 1, next);
+      if (cell >= cols) tail = visit(field, queue, tail, cell - cols, next);
+      if (cell + cols < field.length) tail = visit(field, queue, tail, cell + cols, next);
+    }
+    return field;
+  }
+
+  private int visit(short[] field, int[] queue, int tail, int cell, short steps){
+    if (field[cell] != UNREACHABLE || layout.isStaticallyBlocked(cell) || layout.isEntrance(cell)) return tail;
+    field[cell] = steps;
+    queue[tail] = cell;
+    return tail + 1;
+  }
+
+  /** Returns the fewest steps from the cell to enter the Estate with the specified id, ignoring characters. */
+  public int steps(int cell, int estateId){ return fields[estateId][cell]; }
+
+  /** Returns the whole distance field of the Estate with the specified id (must not be modified). */
+  public short[] field(int estateId){ return fields[estateId]; }
+
+  /** Returns the id of the closest Estate to the cell, or -1 if none can be reached. */
+  public int nearestEstate(int cell){ return nearestIds[cell]; }
+  public int nearestSteps(int cell){ return nearestSteps[cell]; }
+
+  /**
+   * Returns the steps from the cell to enter the Estate, corrected for characters on the model blocking
+   * the neighbouring squares: if every square leading closer is occupied, the best free neighbour is used
+   * instead, which costs a detour. Returns UNREACHABLE if every neighbour is blocked.
+   */
+  public int steps(int cell, int estateId, GridModel model){
+    short[] field = fields[estateId];
+    int steps = field[cell];
+    if (steps == UNREACHABLE || steps == 0) return steps;
+
+    int best = UNREACHABLE;
+    int cols = layout.cols;
+    int col = cell % cols;
+    if (col > 0) best = Math.min(best, neighbour(field, model, cell - 1));
+    if (col + 1 < cols) best = Math.min(best, neighbour(field, model, cell + 1));
+    if (cell >= cols) best = Math.min(best, neighbour(field, model, cell - cols));
+    if (cell + cols < field.length) best = Math.min(best, neighbour(field, model, cell + cols));
+    return best == UNREACHABLE ? UNREACHABLE : Math.max(steps, best + 1);
+  }
+
+  /** Returns the distance of a neighbouring cell if it can be stepped onto, else UNREACHABLE: */
+  private int neighbour(short[] field, GridModel model, int cell){
+    if (model.isBlocked(cell) && !layout.isEntrance(cell)) return UNREACHABLE;
+    return field[cell];
+  }
+
+  /**
+   * Returns the fewest steps to enter an Estate after leaving another one (via any of its unblocked exits),
+   * or UNREACHABLE if it can't be reached:
+   */
+  public int stepsBetween(int fromId, int toId, GridModel model){
+    int best = UNREACHABLE;
+    for (int mask = model.getEstate(fromId).getExitMask(); mask != 0; mask &= mask - 1){
+      int outer = layout.outerCell(layout.entranceCell(fromId, Integer.numberOfTrailingZeros(mask)));
+      best = Math.min(best, fields[toId][outer]);
+    }
+    return best;
+  }
+}
@@ -12,8 +12,10 @@ import java.util.*;
  */
 public class Estate extends Card {
 
-  /** A Set of EstateSquares that can be used by GameCharacters to enter or exit the Estate. */
-  private final Set<EstateSquare> entrances = new HashSet<>();
+  /** The EstateSquares that can be used by GameCharacters to enter or exit the Estate, in map order. */
+  private final List<EstateSquare> entrances = new ArrayList<>();
+  /** Bitmask of the entrances (by index) whose exit isn't blocked. Kept up to date by the GridModel. */
+  private int exitMask;
   /** The cards currently stored within this Estate. Changes as GameCharacters move in/out and guesses are made. */
   private final List<Card> contents = new ArrayList<>();
   /**
@@ -35,10 +37,10 @@ public class Estate extends Card {
   }
 
   /**
-   * Constructs a new Estate with specified name and initial (first letter, lower case).
+   * Constructs a new Estate with specified name, initial (its symbol on the map) and id in the deck.
    */
-  public Estate(String name){
-    super(name, Character.toLowerCase(name.charAt(0)));
+  public Estate(String name, char initial, int id){
+    super(name, initial, id);
   }
 
   /** Adds an inner tile to the Estate that can hold a card: */
@@ -49,7 +51,17 @@ public class Estate extends Card {
 
   /** Adds an entrance to the Estate that Players can enter or leave via: */
   public void addEntrance(EstateSquare s){ entrances.add(s); }
-  public Set<EstateSquare> getEntrances(){ return Collections.unmodifiableSet(entrances); }
+  public List<EstateSquare> getEntrances(){ return Collections.unmodifiableList(entrances); }
+  public EstateSquare getEntrance(int index){ return entrances.get(index); }
+
+  /** Returns a bitmask of the entrances (by index) that can currently be used to leave the Estate. */
+  public int getExitMask(){ return exitMask; }
+  public boolean hasOpenExit(){ return exitMask != 0; }
+  /** Marks the exit via the entrance at the index as open or blocked: */
+  public void setExitOpen(int index, boolean open){
+    if (open) exitMask |= 1 << index;
+    else exitMask &= ~(1 << index);
+  }
 
   public void addContents(Card c){ contents.add(c); }
   public void removeContents(Card c){ contents.remove(c); }
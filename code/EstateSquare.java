@@ -44,7 +44,7 @@ public class EstateSquare extends Square {
   public NormalSquare getOuterSquare(){ return outerSquare; }
   public boolean isExitBlocked(){
     assert(entrance);
-    return outerSquare.isBlocked();
+    return outerSquare == null || outerSquare.isBlocked();
   }
 
   @Override
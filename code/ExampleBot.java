@@ -0,0 +1,40 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Random;
+
+/**
+ * ExampleBot is a minimal program speaking the ExternalBot protocol, as a starting point for bots in other languages:
+ * it ignores what it's told, and makes every decision at random. Accusing is left out, since it would have to
+ * know the solution. To play it in a tournament:
+ *   java Tournament --bot "java ExampleBot"
+ */
+public class ExampleBot {
+
+  public static void main(String... args) throws IOException {
+    BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+    Random random = new Random();
+    for (String line = in.readLine(); line != null; line = in.readLine()){
+      String[] tokens = line.split(" ");
+      switch (tokens[0]){
+        case "act": {
+          // Choose a random action other than accusing (the actions follow the ID and time budget):
+          String action;
+          do action = tokens[3 + random.nextInt(tokens.length - 3)];
+          while (action.equals("accuse"));
+          System.out.println(tokens[1]+" "+action);
+          break;
+        }
+        case "refute":
+          // Show a random one of the Cards (which follow the ID, time budget and guesser):
+          System.out.println(tokens[1]+" "+tokens[4 + random.nextInt(tokens.length - 4)]);
+          break;
+        case "over":
+          return;
+        default:
+          break;
+      }
+      System.out.flush();
+    }
+  }
+}
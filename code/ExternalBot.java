@@ -0,0 +1,306 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExternalBot is a Computer whose decisions are made by a separate program, in any language, run as a child process.
+ * The game and the bot exchange lines of text over the bot's standard input and output (tokens separated by spaces).
+ *
+ * The game tells the bot what it sees:
+ *   game SEAT SEATS              the game has started, and the bot plays the seat (seats count from 0)
+ *   card ID CATEGORY NAME        once per Card (CHARACTER, ESTATE or WEAPON; the name may contain spaces)
+ *   hand ID...                   the Cards dealt to the bot
+ *   state PLACE...               where each seat's character is before a decision: ROW,COL or eESTATE_ID,
+ *                                followed by ! if that seat is eliminated
+ *   roll N                       the bot rolled N to move
+ *   guess SEAT CHARACTER ESTATE WEAPON REFUTER [SHOWN]
+ *                                a guess, refuted by REFUTER (-1 if no one could), with the Card shown if the bot saw it
+ *   over WINNER                  the game is over (WINNER being -1 if no one won), and the bot should exit
+ *
+ * and asks it to decide, giving the request an ID and the milliseconds the bot has to reply:
+ *   act ID MILLIS ACTION...      choose one of the actions: end, accuse, move:ESTATE_ID (roll and head for the Estate,
+ *                                leaving the current one) or guess:CHARACTER_ID:WEAPON_ID
+ *   refute ID MILLIS GUESSER CARD_ID...   choose which of the Cards to show the guesser
+ *
+ * The bot replies with the ID then its choice: "ID ACTION" (where accusing is "ID accuse CHARACTER ESTATE WEAPON"),
+ * or "ID CARD_ID". Other lines are ignored. A bot that replies too late, makes an invalid choice or exits
+ * has the Computer make that decision instead.
+ *
+ * Messages are written and read on background threads, so the game never waits on a bot except for a decision.
+ */
+public class ExternalBot extends Computer {
+
+    /** The default time a bot has to make each decision: */
+    public static final long DEFAULT_BUDGET_MILLIS = 1000;
+
+    /** Put in the replies once the bot's output closes: */
+    private static final String CLOSED = new String("closed");
+
+    private final Process process;
+    private final long budgetMillis;
+    private final BlockingQueue<String> outgoing = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+    private int requests;
+    private boolean started;
+
+    /**
+     * Constructs a new ExternalBot with a specified number and character to control, starting the bot with the command
+     * and giving it budgetMillis for each decision:
+     */
+    public ExternalBot(int number, GameCharacter c, List<String> command, long budgetMillis) {
+        super(number, c);
+        this.budgetMillis = budgetMillis;
+        try {
+            process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to start bot: "+String.join(" ", command), e);
+        }
+
+        Thread writer = new Thread(this::write, "bot-writer-"+c);
+        Thread reader = new Thread(this::read, "bot-reader-"+c);
+        writer.setDaemon(true);
+        reader.setDaemon(true);
+        writer.start();
+        reader.start();
+    }
+
+    /** Sends the queued messages to the bot, closing its input after the last one: */
+    private void write(){
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8))){
+            while (true){
+                String message = outgoing.take();
+                if (message == CLOSED) return;
+                w.write(message);
+                w.write('\n');
+                // Only flush once the messages so far are written:
+                if (outgoing.isEmpty()) w.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // The bot has exited (or is being shut down), so there's no one to send to
+        }
+    }
+
+    /** Queues the bot's replies: */
+    private void read(){
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))){
+            for (String line = r.readLine(); line != null; line = r.readLine()) replies.add(line);
+        } catch (IOException e) {
+            // The bot's output was closed
+        }
+        replies.add(CLOSED);
+    }
+
+    private void send(String message){ outgoing.add(message); }
+
+    /**
+     * Tells the bot about the game, the first time it's needed (once the Cards have been dealt):
+     */
+    private void start(Board board){
+        if (started) return;
+        started = true;
+        send("game "+character.index+" "+board.getPlayers().length);
+        CardRegistry registry = board.getRegistry();
+        for (Card c : registry.all()) send("card "+c.id+" "+registry.categoryOf(c)+" "+c.name);
+        send("hand"+ids(hand.bits));
+    }
+
+    /**
+     * Sends a request and waits for the reply until the time budget runs out.
+     * Returns the tokens of the reply after its ID, or null if there wasn't one in time.
+     */
+    private String[] request(Board board, String kind, String arguments){
+        int id = ++requests;
+        send(kind+" "+id+" "+budgetMillis+" "+arguments);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        PrintStream out = board.getOut();
+        try {
+            while (true){
+                String line = replies.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (line == null){
+                    out.println("Bot ("+character+") ran out of time.");
+                    return null;
+                }
+                if (line == CLOSED){
+                    replies.add(CLOSED);
+                    out.println("Bot ("+character+") isn't running.");
+                    return null;
+                }
+                // (Replies to earlier requests, that came too late, are dropped):
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens[0].equals(String.valueOf(id))) return Arrays.copyOfRange(tokens, 1, tokens.length);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Asks the bot what to do on its turn, and does it (or has the Computer take the turn if the bot doesn't answer):
+     */
+    @Override
+    protected void takeTurn(Board board){
+        start(board);
+        PrintStream out = board.getOut();
+        if (solveAttempted()){
+            out.println("Computer has ended turn.");
+            return;
+        }
+        CardRegistry registry = board.getRegistry();
+        StringBuilder actions = new StringBuilder("end accuse");
+        for (Card e : registry.all(CardRegistry.Category.ESTATE)){
+            if (e != character.getEstate()) actions.append(" move:").append(e.id);
+        }
+        if (character.inEstate()) actions.append(guesses(registry));
+        String[] reply = decide(board, actions.toString());
+        if (reply == null){
+            super.takeTurn(board);
+            return;
+        }
+
+        switch (reply[0]){
+            case "accuse":
+                solve(board, registry.set(cards(reply)));
+                return;
+            case "guess":
+                guess(board, reply);
+                return;
+            case "move":
+                Estate target = (Estate) registry.get(Integer.parseInt(reply[1]));
+                if (moveTowards(board, CardSet.bit(target))){
+                    // Having entered the Estate, it can guess there:
+                    reply = decide(board, "end"+guesses(registry));
+                    if (reply == null) guess(board);
+                    else if (reply[0].equals("guess")) guess(board, reply);
+                    if (reply == null || reply[0].equals("guess")) return;
+                }
+                break;
+        }
+        out.println("Computer has ended turn.");
+    }
+
+    /**
+     * Requests an action, returning it split into its parts (e.g. "guess", character id, weapon id),
+     * or null if the bot didn't choose one of the actions in time:
+     */
+    private String[] decide(Board board, String actions){
+        send(state(board));
+        String[] reply = request(board, "act", actions);
+        if (reply == null || reply.length == 0) return null;
+        String[] action = reply[0].split(":");
+        boolean valid = (" "+actions+" ").contains(" "+reply[0]+" ");
+        if (action[0].equals("accuse")){
+            long accusation = reply.length == 4 ? cards(reply) : 0;
+            for (CardRegistry.Category category : CardRegistry.Category.values()){
+                valid &= Long.bitCount(accusation & board.getRegistry().all(category).bits) == 1;
+            }
+            if (valid) return reply;
+        }
+        else if (valid) return action;
+        board.getOut().println("Bot ("+character+") made an invalid choice: "+String.join(" ", reply));
+        return null;
+    }
+
+    private void guess(Board board, String[] action){
+        CardRegistry registry = board.getRegistry();
+        guess(board, (GameCharacter) registry.get(Integer.parseInt(action[1])), (Weapon) registry.get(Integer.parseInt(action[2])));
+    }
+
+    /** Returns the guess actions in the current Estate: */
+    private static String guesses(CardRegistry registry){
+        StringBuilder s = new StringBuilder();
+        for (Card c : registry.all(CardRegistry.Category.CHARACTER)){
+            for (Card w : registry.all(CardRegistry.Category.WEAPON)) s.append(" guess:").append(c.id).append(':').append(w.id);
+        }
+        return s.toString();
+    }
+
+    /** Returns the bitmask of the card ids after the first token (if they're valid): */
+    private static long cards(String[] tokens){
+        long cards = 0;
+        for (int i = 1; i < tokens.length; i++){
+            try {
+                int id = Integer.parseInt(tokens[i]);
+                if (id >= 0 && id < Long.SIZE) cards |= 1L << id;
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return cards;
+    }
+
+    /** Returns the card ids in the bitmask, each after a space: */
+    private static String ids(long cards){
+        StringBuilder s = new StringBuilder();
+        for (long b = cards; b != 0; b &= b - 1) s.append(' ').append(Long.numberOfTrailingZeros(b));
+        return s.toString();
+    }
+
+    /** Describes where everyone is, and who has been eliminated: */
+    private static String state(Board board){
+        StringBuilder s = new StringBuilder("state");
+        for (Player p : board.getPlayers()){
+            GameCharacter c = p.character;
+            if (c.inEstate()) s.append(" e").append(c.getEstate().id);
+            else s.append(' ').append(c.getSquare().row).append(',').append(c.getSquare().col);
+            if (p.solveAttempted()) s.append('!');
+        }
+        return s.toString();
+    }
+
+    @Override
+    protected int roll(Board board){
+        int roll = super.roll(board);
+        send("roll "+roll);
+        return roll;
+    }
+
+    /**
+     * Asks the bot which Card to show (or has the Computer choose if the bot doesn't answer with one of them):
+     */
+    @Override
+    protected Card refute(Board board, CardSet guess, Player original){
+        CardSet options = hand.and(guess);
+        if (options.isEmpty()) return super.refute(board, guess, original);
+        start(board);
+        String[] reply = request(board, "refute", original.character.index+ids(options.bits));
+        long choice = reply == null || reply.length != 1 ? 0 : cards(new String[]{"", reply[0]}) & options.bits;
+        if (choice == 0) return super.refute(board, guess, original);
+        recordShown(board, choice, original.character.index);
+        Card c = board.getCard(Long.numberOfTrailingZeros(choice));
+        board.getOut().println("Computer ("+character+") revealed: "+c);
+        return c;
+    }
+
+    @Override
+    public void observeGuess(Board board, int guesser, CardSet guess, int refuter, Card shown){
+        super.observeGuess(board, guesser, guess, refuter, shown);
+        start(board);
+        StringBuilder s = new StringBuilder("guess ").append(guesser);
+        for (CardRegistry.Category category : CardRegistry.Category.values()){
+            s.append(ids(guess.bits & board.getRegistry().all(category).bits));
+        }
+        s.append(' ').append(refuter);
+        if (shown != null) s.append(' ').append(shown.id);
+        send(s.toString());
+    }
+
+    /**
+     * Tells the bot the game is over, and stops it if it doesn't exit soon after:
+     */
+    @Override
+    public void gameFinished(Board board){
+        Player winner = board.getWinner();
+        send("over "+(winner == null ? -1 : winner.character.index));
+        send(CLOSED);
+        try {
+            if (!process.waitFor(budgetMillis, TimeUnit.MILLISECONDS)) process.destroyForcibly();
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -10,6 +10,7 @@ import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 
 /**
@@ -22,17 +23,17 @@ public class GUI extends JFrame{
 	public static final int SIZE = 808; //size of square Jframe
 	
 	
-	public GUI() {
-		initUI();
+	public GUI(Board board) {
+		initUI(board);
 	}
 	
 	
 	
-	private void initUI() {
-		DrawPanel drawPanel = new DrawPanel();
+	private void initUI(Board board) {
+		DrawPanel drawPanel = new DrawPanel(board);
 		add(drawPanel);
 		
-		initMenuBar();
+		initMenuBar(board);
 		
 		setSize(SIZE,SIZE+50);
 		setTitle("MurderMadness");
@@ -44,7 +45,7 @@ public class GUI extends JFrame{
 	/*
 	 * Sets up menu bar *needs work*
 	 */
-	private void initMenuBar() {
+	private void initMenuBar(Board board) {
 		JMenuBar menu = new JMenuBar();
 		JMenu fileMenu = new JMenu("File");
 		
@@ -55,6 +56,13 @@ public class GUI extends JFrame{
 		fileMenu.add(exitMenuItem);
 		menu.add(fileMenu);
 		
+		JMenu helpMenu = new JMenu("Help");
+		JMenuItem hintMenuItem = new JMenuItem("Hint");
+		hintMenuItem.setToolTipText("Suggest a guess from what the current player has seen");
+		hintMenuItem.addActionListener((event) -> JOptionPane.showMessageDialog(this, board.hint(), "Hint", JOptionPane.INFORMATION_MESSAGE));
+		helpMenu.add(hintMenuItem);
+		menu.add(helpMenu);
+		
 		setJMenuBar(menu);
 	}
 }
@@ -66,7 +74,10 @@ public class GUI extends JFrame{
 class DrawPanel extends JPanel {
 	private static Image gameOverPNG = loadImage("gameover.png");
 	
-	public DrawPanel() {
+	private final Board board; //the game this panel displays
+	
+	public DrawPanel(Board board) {
+		this.board = board;
 		//this.setPreferredSize(new Dimension(200,200));
 		this.setBackground(new Color(36,36,36));
 	}
@@ -77,13 +88,13 @@ class DrawPanel extends JPanel {
 	private void drawGame(Graphics g) throws IOException {
 		Graphics g2 = (Graphics2D) g;
 		
-		Board.drawBoard(g2); //draws the grid and squares
+		board.drawBoard(g2); //draws the grid and squares
 		
-		for(GameCharacter c : Board.characterList()) { //draws characters onto the grid
+		for(GameCharacter c : board.characterList()) { //draws characters onto the grid
 			c.drawCharacter(g2);
 		}
 		
-		for(Estate e : Board.estateList()) { //draws estates contents like weapons and characters
+		for(Estate e : board.estateList()) { //draws estates contents like weapons and characters
 			e.drawEstateContents(g2);
 			e.drawEstateName(g2);
 		}
@@ -98,7 +109,7 @@ class DrawPanel extends JPanel {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
-		if(Board.gameOver()) {
+		if(board.gameOver()) {
 			drawGameOver(g);
 		}
 	}
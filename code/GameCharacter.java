@@ -9,6 +9,8 @@ import java.awt.Graphics2D;
  */
 public class GameCharacter extends Card {
 
+  /** The character's position in the order of play (0 for the first character). */
+  public final int index;
   /** The Square this character is currently on. */
   private Square square;
 
@@ -17,9 +19,13 @@ public class GameCharacter extends Card {
     Lucilla, Bert, Malina, Percy
   }
 
-  /** Constructs a new GameCharacter with the specified name and initial (first character, upper case). */
-  public GameCharacter(String name){
-    super(name, name.charAt(0));
+  /**
+   * Constructs a new GameCharacter with the specified name, initial (its symbol on the map), and index in the order of play.
+   * GameCharacters come first in the deck, so the index is also its id.
+   */
+  public GameCharacter(String name, char initial, int index){
+    super(name, initial, index);
+    this.index = index;
   }
 
   /**
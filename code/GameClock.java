@@ -0,0 +1,57 @@
+/**
+ * GameClock paces a game of Murder Madness by deciding how long each pause in the game lasts.
+ * It has three modes:
+ * - REAL_TIME pauses for the full time, so people can follow along.
+ * - SCALED pauses for a fraction (or multiple) of the time.
+ * - VIRTUAL never sleeps and advances the game's time instantly.
+ *
+ * Every mode keeps track of how much game time has passed, so timings can still be reported
+ * for games played at full CPU speed.
+ */
+public class GameClock {
+
+  /** All pacing modes. */
+  public enum Mode {
+    REAL_TIME, SCALED, VIRTUAL
+  }
+
+  public final Mode mode;
+  /** How much each pause is multiplied by (1 for real time, 0 for virtual). */
+  public final double scale;
+  /** Total milliseconds of game time that have passed during pauses. */
+  private long elapsed;
+
+  private GameClock(Mode mode, double scale){
+    this.mode = mode;
+    this.scale = scale;
+  }
+
+  /** Returns a clock that pauses for the full time (for human play). */
+  public static GameClock realTime(){ return new GameClock(Mode.REAL_TIME, 1); }
+
+  /** Returns a clock that multiplies each pause by the specified scale (e.g. 0.1 for 10x speed). */
+  public static GameClock scaled(double scale){
+    if (scale < 0) throw new IllegalArgumentException("Invalid clock scale: "+scale);
+    return new GameClock(Mode.SCALED, scale);
+  }
+
+  /** Returns a clock that never sleeps (for simulations, tests and servers). */
+  public static GameClock virtual(){ return new GameClock(Mode.VIRTUAL, 0); }
+
+  public long elapsedMillis(){ return elapsed; }
+
+  /**
+   * Pauses the game for the specified amount of game time:
+   */
+  public void pause(int millis){
+    elapsed += millis;
+    if (mode == Mode.VIRTUAL) return;
+    long real = Math.round(millis * scale);
+    if (real <= 0) return;
+    try {
+      Thread.sleep(real);
+    } catch (InterruptedException e){
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,169 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * GameConfig describes the deck a game of Murder Madness is played with: its GameCharacters
+ * (each played by one Player, so there is a Player per character), Estates and Weapons.
+ *
+ * A config file has a line per category, listing its cards separated by commas, e.g.
+ *   characters = Lucilla, Bert, Malina, Percy
+ * GameCharacters and Estates may be given the symbol they have on the map after a ':'
+ * (e.g. "Villa Celia:v"), else the first letter of their name is used.
+ * Weapons are given symbols by their position in the list. Blank lines and lines starting with '#' are ignored.
+ */
+public final class GameConfig {
+
+  /** Limits on the size of the game: */
+  public static final int MIN_PLAYERS = 2;
+  public static final int MAX_PLAYERS = 16;
+  /** The most cards a deck can have in total, so a set of them fits in a long: */
+  public static final int MAX_CARDS = 64;
+  /** Symbols given to weapons, in order: */
+  public static final String WEAPON_SYMBOLS = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+  /** A card's name and symbol: */
+  public static final class Entry {
+    public final String name;
+    public final char symbol;
+
+    public Entry(String name, char symbol){
+      this.name = name;
+      this.symbol = symbol;
+    }
+
+    @Override
+    public String toString(){ return name+":"+symbol; }
+  }
+
+  /** The cards in each category, in order (the order of the GameCharacters is the order of play): */
+  public final List<Entry> characters;
+  public final List<Entry> estates;
+  public final List<Entry> weapons;
+
+  /**
+   * Constructs a config from the cards in each category, checking that their names and symbols are unique
+   * and that there aren't too many of them:
+   */
+  public GameConfig(List<Entry> characters, List<Entry> estates, List<Entry> weapons){
+    this.characters = Collections.unmodifiableList(new ArrayList<>(characters));
+    this.estates = Collections.unmodifiableList(new ArrayList<>(estates));
+    this.weapons = Collections.unmodifiableList(new ArrayList<>(weapons));
+
+    if (characters.size() < MIN_PLAYERS || characters.size() > MAX_PLAYERS){
+      throw new IllegalArgumentException("Between "+MIN_PLAYERS+" and "+MAX_PLAYERS+" characters are supported");
+    }
+    if (estates.isEmpty() || weapons.isEmpty()) throw new IllegalArgumentException("There must be at least one estate and weapon");
+    if (weapons.size() > WEAPON_SYMBOLS.length()) throw new IllegalArgumentException("At most "+WEAPON_SYMBOLS.length()+" weapons are supported");
+    if (cardCount() > MAX_CARDS) throw new IllegalArgumentException("At most "+MAX_CARDS+" cards are supported");
+
+    Set<String> names = new HashSet<>();
+    Set<Character> symbols = new HashSet<>();
+    for (Entry c : characters){
+      if (c.symbol < 'A' || c.symbol > 'Z') throw new IllegalArgumentException("Character symbols must be upper case letters: "+c);
+      if (!symbols.add(c.symbol)) throw new IllegalArgumentException("Duplicate symbol: "+c);
+    }
+    for (Entry e : estates){
+      if (e.symbol < 'a' || e.symbol > 'z' || e.symbol == 'e' || e.symbol == 'x'){
+        throw new IllegalArgumentException("Estate symbols must be lower case letters other than 'e' and 'x': "+e);
+      }
+      if (!symbols.add(e.symbol)) throw new IllegalArgumentException("Duplicate symbol: "+e);
+    }
+    for (List<Entry> category : Arrays.asList(characters, estates, weapons)){
+      for (Entry c : category){
+        if (!names.add(c.name.toLowerCase())) throw new IllegalArgumentException("Duplicate card name: "+c.name);
+      }
+    }
+  }
+
+  public int playerCount(){ return characters.size(); }
+  public int cardCount(){ return characters.size() + estates.size() + weapons.size(); }
+
+  /** Returns the symbols of the GameCharacters and of the Estates, in order: */
+  public String characterSymbols(){ return symbols(characters); }
+  public String estateSymbols(){ return symbols(estates); }
+
+  private static String symbols(List<Entry> entries){
+    StringBuilder s = new StringBuilder();
+    for (Entry e : entries) s.append(e.symbol);
+    return s.toString();
+  }
+
+  /** Returns the standard Murder Madness deck: */
+  public static GameConfig standard(){
+    List<Entry> characters = new ArrayList<>(), estates = new ArrayList<>(), weapons = new ArrayList<>();
+    for (GameCharacter.Name n : GameCharacter.Name.values()) characters.add(entry(n.toString(), false));
+    for (Estate.Name n : Estate.Name.values()) estates.add(entry(n.toString().replace('_', ' '), true));
+    for (Weapon.Name n : Weapon.Name.values()) weapons.add(weapon(n.toString(), weapons.size()));
+    return new GameConfig(characters, estates, weapons);
+  }
+
+  /**
+   * Returns a bigger deck for big-table games, starting with the standard cards and adding numbered ones:
+   * (Its estates have the symbols used by MapGenerator, so it can be played on generated maps).
+   */
+  public static GameConfig generated(int characterCount, int estateCount, int weaponCount){
+    if (estateCount > MapGenerator.ESTATE_SYMBOLS.length() || weaponCount > WEAPON_SYMBOLS.length()){
+      throw new IllegalArgumentException("At most "+MapGenerator.ESTATE_SYMBOLS.length()+" estates and "
+              +WEAPON_SYMBOLS.length()+" weapons are supported");
+    }
+    GameConfig standard = standard();
+    String characterSymbols = standard.characterSymbols() + "ACDEFGHIJKNOQRSTUVWXYZ";
+    List<Entry> characters = new ArrayList<>(), estates = new ArrayList<>(), weapons = new ArrayList<>();
+    for (int i = 0; i < characterCount; i++){
+      char symbol = characterSymbols.charAt(i);
+      characters.add(i < standard.characters.size() ? standard.characters.get(i) : new Entry("Guest "+symbol, symbol));
+    }
+    for (int i = 0; i < estateCount; i++){
+      char symbol = MapGenerator.ESTATE_SYMBOLS.charAt(i);
+      estates.add(i < standard.estates.size() ? standard.estates.get(i) : new Entry("Estate "+symbol, symbol));
+    }
+    for (int i = 0; i < weaponCount; i++){
+      weapons.add(i < standard.weapons.size() ? standard.weapons.get(i) : weapon("Weapon "+(i+1), i));
+    }
+    return new GameConfig(characters, estates, weapons);
+  }
+
+  /**
+   * Reads a config file:
+   */
+  public static GameConfig load(Path file) throws IOException {
+    Map<String, List<Entry>> categories = new HashMap<>();
+    for (String line : Files.readAllLines(file)){
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) continue;
+      int equals = line.indexOf('=');
+      if (equals == -1) throw new IllegalArgumentException("Expected \"category = cards\": "+line);
+      String category = line.substring(0, equals).trim().toLowerCase();
+      List<Entry> entries = new ArrayList<>();
+      for (String card : line.substring(equals + 1).split(",")){
+        card = card.trim();
+        if (card.isEmpty()) continue;
+        if (category.equals("weapons")) entries.add(weapon(card, entries.size()));
+        else entries.add(entry(card, category.equals("estates")));
+      }
+      categories.put(category, entries);
+    }
+    for (String category : Arrays.asList("characters", "estates", "weapons")){
+      if (!categories.containsKey(category)) throw new IllegalArgumentException("Missing "+category+" in "+file);
+    }
+    return new GameConfig(categories.get("characters"), categories.get("estates"), categories.get("weapons"));
+  }
+
+  /**
+   * Makes an Entry from "name" or "name:symbol", the default symbol being the name's first letter
+   * (in lower case for Estates, and upper case for GameCharacters):
+   */
+  private static Entry entry(String card, boolean lowerCase){
+    int colon = card.lastIndexOf(':');
+    if (colon != -1 && colon == card.length() - 2) return new Entry(card.substring(0, colon).trim(), card.charAt(colon + 1));
+    char first = card.charAt(0);
+    return new Entry(card, lowerCase ? Character.toLowerCase(first) : Character.toUpperCase(first));
+  }
+
+  /** Makes the Entry of the Weapon at the index, which is its symbol: */
+  private static Entry weapon(String name, int index){
+    return new Entry(name, index < WEAPON_SYMBOLS.length() ? WEAPON_SYMBOLS.charAt(index) : '?');
+  }
+}
@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GridModel holds the per-game state of a map: which GameCharacter (if any) occupies each cell.
+ * It sits on top of a shared MapLayout, using the same row*cols+col cell indices, so movement
+ * and AI search can work on flat arrays rather than on Square objects.
+ *
+ * Occupancy is also tracked in bitboards, and every Estate's mask of unblocked exits is kept
+ * up to date as cells are occupied and vacated, so "is this cell blocked" and "which exits can
+ * I leave by" are single bit operations.
+ *
+ * The Squares on the Board are only views of this model used for rendering.
+ */
+public final class GridModel {
+
+  /** Notified whenever a cell becomes occupied or free, e.g. so pathfinders can update incrementally. */
+  public interface Listener {
+    void cellChanged(int cell);
+  }
+
+  /** The map this model is played on. */
+  public final MapLayout layout;
+  /** The GameCharacters that can occupy cells, indexed by GameCharacter.index. */
+  private final GameCharacter[] characters;
+  /** The Estates on the map, indexed by their MapLayout estate id. */
+  private final Estate[] estates;
+  /** The index + 1 of the GameCharacter on each cell, or 0 if it's unoccupied. */
+  private final byte[] occupants;
+  /** Bitboards of occupied cells, and of cells that are blocked (occupied or always blocked): */
+  private final Bitboard occupied;
+  private final Bitboard blocked;
+  private final List<Listener> listeners = new ArrayList<>();
+
+  /**
+   * Constructs an empty model of the specified map, to be occupied by the specified characters,
+   * and opens every exit of the specified Estates (indexed by estate id) that leads onto a free square.
+   */
+  public GridModel(MapLayout layout, GameCharacter[] characters, Estate[] estates){
+    this.layout = layout;
+    this.characters = characters.clone();
+    this.estates = estates.clone();
+    this.occupants = new byte[layout.size()];
+    this.occupied = new Bitboard(layout.size());
+    this.blocked = layout.blockedCells();
+
+    for (int cell = 0; cell < layout.size(); cell++){
+      if (!layout.isEntrance(cell)) continue;
+      int outer = layout.outerCell(cell);
+      Estate e = estates[layout.estateId(cell)];
+      e.setExitOpen(layout.entranceIndex(cell), outer != -1 && !blocked.get(outer));
+    }
+  }
+
+  public void addListener(Listener l){ listeners.add(l); }
+
+  /** Returns true if a GameCharacter can't move onto the cell: */
+  public boolean isBlocked(int cell){ return blocked.get(cell); }
+
+  public boolean isOccupied(int cell){ return occupied.get(cell); }
+
+  /** Returns the Estate with the specified MapLayout estate id. */
+  public Estate getEstate(int id){ return estates[id]; }
+
+  /** Returns the MapLayout estate id of the Estate, or -1 if it isn't on the map. */
+  public int estateId(Estate e){
+    for (int id = 0; id < estates.length; id++){
+      if (estates[id] == e) return id;
+    }
+    return -1;
+  }
+
+  /** Returns the GameCharacter on the cell, or null if there isn't one. */
+  public GameCharacter getCharacter(int cell){
+    int o = occupants[cell];
+    return o == 0 ? null : characters[o - 1];
+  }
+
+  /** Places a GameCharacter on the cell: */
+  public void occupy(int cell, GameCharacter c){
+    occupants[cell] = (byte) (c.index + 1);
+    occupied.set(cell);
+    blocked.set(cell);
+    updateExits(cell, false);
+    for (Listener l : listeners) l.cellChanged(cell);
+  }
+
+  /** Removes whichever GameCharacter is on the cell: */
+  public void vacate(int cell){
+    occupants[cell] = 0;
+    occupied.clear(cell);
+    blocked.clear(cell);
+    updateExits(cell, true);
+    for (Listener l : listeners) l.cellChanged(cell);
+  }
+
+  /**
+   * Opens or closes every Estate exit that leads onto the cell:
+   */
+  private void updateExits(int cell, boolean open){
+    for (int i = layout.guardStart(cell); i < layout.guardEnd(cell); i++){
+      int exit = layout.guard(i);
+      estates[exit >> 5].setExitOpen(exit & 31, open);
+    }
+  }
+}
@@ -0,0 +1,230 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * GuessAdvisor recommends which GameCharacter and Weapon to guess with in an Estate.
+ * Every possible guess is scored by how much it's expected to reveal about the solution: the mutual information
+ * (in bits) between the solution and what the guesser will see, i.e. who refutes it and with which Card.
+ * The outcomes are keyed by the refuting seat as well as the Card, since which seats pass is evidence too.
+ *
+ * The outcomes are worked out over deals sampled by a HandSampler from the guesser's Deduction,
+ * so the order in which the other seats would be asked, and what they probably hold, are taken into account.
+ * (A refuter holding several of the guessed Cards is assumed to show each with equal chance).
+ *
+ * The guesses are scored in parallel on a fork/join pool. If a time budget is set, guesses not scored
+ * in time are left out (the most promising ones being scored first); without one, results only depend on the seed.
+ */
+public final class GuessAdvisor {
+
+  /** The default time budget for interactive advice: */
+  public static final long DEFAULT_BUDGET_NANOS = 200_000_000L;
+  /** Tasks with at most this many guesses aren't split further: */
+  private static final int CHUNK = 4;
+
+  private final HandSampler sampler;
+  private final ForkJoinPool pool;
+  private final long budgetNanos;
+
+  /** Constructs an advisor with the default sampler, on the common pool, with the default time budget: */
+  public GuessAdvisor(){
+    this(new HandSampler(), ForkJoinPool.commonPool(), DEFAULT_BUDGET_NANOS);
+  }
+
+  /** Constructs an advisor using the sampler and pool, scoring guesses for up to budgetNanos (no limit if 0): */
+  public GuessAdvisor(HandSampler sampler, ForkJoinPool pool, long budgetNanos){
+    this.sampler = sampler;
+    this.pool = pool;
+    this.budgetNanos = budgetNanos;
+  }
+
+  /** A guess and the information it's expected to reveal about the solution (in bits): */
+  public static final class Advice {
+    public final GameCharacter character;
+    public final Weapon weapon;
+    public final double gain;
+
+    private Advice(GameCharacter character, Weapon weapon, double gain){
+      this.character = character;
+      this.weapon = weapon;
+      this.gain = gain;
+    }
+
+    @Override
+    public String toString(){ return character+" with the "+weapon+String.format(" (%.2f bits)", gain); }
+  }
+
+  /**
+   * Returns the best guess in the Estate for the player whose Deduction it is, or null if none could be scored:
+   */
+  public Advice recommend(Deduction d, CardRegistry registry, Estate e, long seed){
+    List<Advice> ranked = rank(d, registry, e, seed);
+    return ranked.isEmpty() ? null : ranked.get(0);
+  }
+
+  /**
+   * Scores every guess in the Estate, returning them best first (leaving out any not scored within the time budget):
+   */
+  public List<Advice> rank(Deduction d, CardRegistry registry, Estate e, long seed){
+    long deadline = budgetNanos > 0 ? System.nanoTime() + budgetNanos : Long.MAX_VALUE;
+    HandSampler.Deals deals = sampler.sample(d, seed);
+
+    // Guesses about more Cards that might be in the solution are tried first, in case time runs out:
+    List<Card> characters = new ArrayList<>(), weapons = new ArrayList<>();
+    for (Card c : registry.all(CardRegistry.Category.CHARACTER)) characters.add(c);
+    for (Card w : registry.all(CardRegistry.Category.WEAPON)) weapons.add(w);
+    long candidates = d.candidates();
+    long[] guesses = new long[characters.size() * weapons.size()];
+    int n = 0;
+    for (Card c : characters){
+      for (Card w : weapons) guesses[n++] = CardSet.bit(c) | CardSet.bit(w);
+    }
+    Long[] order = new Long[guesses.length];
+    for (int i = 0; i < order.length; i++) order[i] = guesses[i];
+    Arrays.sort(order, Comparator.comparingInt((Long g) -> -Long.bitCount(g & candidates)));
+    for (int i = 0; i < order.length; i++) guesses[i] = order[i];
+
+    double[] gains = new double[guesses.length];
+    Arrays.fill(gains, Double.NaN);
+    Outcomes outcomes = new Outcomes(d, deals, CardSet.bit(e));
+    pool.invoke(new Scoring(outcomes, guesses, gains, 0, guesses.length, deadline));
+
+    List<Advice> ranked = new ArrayList<>();
+    for (int i = 0; i < guesses.length; i++){
+      if (Double.isNaN(gains[i])) continue;
+      long g = guesses[i];
+      Card first = registry.get(Long.numberOfTrailingZeros(g));
+      Card second = registry.get(63 - Long.numberOfLeadingZeros(g));
+      ranked.add(new Advice((GameCharacter) first, (Weapon) second, gains[i]));
+    }
+    ranked.sort(Comparator.comparingDouble((Advice a) -> -a.gain));
+    return ranked;
+  }
+
+  /**
+   * The sampled deals, prepared for scoring guesses: each deal's solution as an index into the table
+   * of possible solutions, whose size is the product of the categories' candidate counts.
+   * The outcomes of a guess are no refutation (0), or a seat refuting with one of the three guessed Cards
+   * (1 + seat * 3 + the Card's category).
+   */
+  private static final class Outcomes {
+    final HandSampler.Deals deals;
+    final int self;
+    final long estate;
+    final int[] solutions;
+    final int solutionCount;
+    final int outcomeCount;
+
+    Outcomes(Deduction d, HandSampler.Deals deals, long estate){
+      this.deals = deals;
+      this.self = d.self;
+      this.estate = estate;
+      CardRegistry.Category[] categories = CardRegistry.Category.values();
+      long[] candidates = new long[categories.length];
+      int count = 1;
+      for (int c = 0; c < categories.length; c++){
+        candidates[c] = d.candidates() & d.category(categories[c]);
+        count *= Math.max(1, Long.bitCount(candidates[c]));
+      }
+      solutionCount = count;
+      outcomeCount = deals.seats * 3 + 1;
+      solutions = new int[deals.count];
+      for (int i = 0; i < deals.count; i++){
+        int index = 0;
+        for (long cand : candidates){
+          long bit = deals.solution(i) & cand;
+          index = index * Math.max(1, Long.bitCount(cand)) + Long.bitCount(cand & (bit - 1));
+        }
+        solutions[i] = index;
+      }
+    }
+
+    /**
+     * Returns the mutual information (in bits) between the solution and the outcome of guessing the Cards
+     * (a GameCharacter and Weapon) in the estate, using joint (solutionCount * outcomeCount long)
+     * and byOutcome (outcomeCount long) as buffers:
+     */
+    double gain(long cards, double[] joint, double[] byOutcome){
+      long guess = cards | estate;
+      long character = cards & -cards, weapon = cards & ~character;
+      int outcomes = outcomeCount;
+      Arrays.fill(joint, 0, solutionCount * outcomes, 0);
+      double total = 0;
+      for (int i = 0; i < deals.count; i++){
+        double w = deals.weight(i);
+        total += w;
+        int row = solutions[i] * outcomes;
+
+        // Find the first seat after the guesser that can refute, and split the weight between the Cards it could show:
+        long shown = 0;
+        int refuter = -1;
+        for (int k = 1; k < deals.seats && shown == 0; k++){
+          refuter = (self + k) % deals.seats;
+          shown = deals.hand(i, refuter) & guess;
+        }
+        if (shown == 0){
+          joint[row] += w;
+          continue;
+        }
+        double each = w / Long.bitCount(shown);
+        int first = row + 1 + refuter * 3;
+        if ((shown & character) != 0) joint[first] += each;
+        if ((shown & estate) != 0) joint[first + 1] += each;
+        if ((shown & weapon) != 0) joint[first + 2] += each;
+      }
+      if (total == 0) return 0;
+
+      Arrays.fill(byOutcome, 0, outcomes, 0);
+      for (int s = 0; s < solutionCount; s++){
+        for (int o = 0; o < outcomes; o++) byOutcome[o] += joint[s * outcomes + o];
+      }
+      double gain = 0;
+      for (int s = 0; s < solutionCount; s++){
+        double bySolution = 0;
+        for (int o = 0; o < outcomes; o++) bySolution += joint[s * outcomes + o];
+        for (int o = 0; o < outcomes; o++){
+          double p = joint[s * outcomes + o];
+          if (p > 0) gain += p * Math.log(p * total / (bySolution * byOutcome[o]));
+        }
+      }
+      return gain / total / Math.log(2);
+    }
+  }
+
+  /**
+   * Scores a range of the guesses, splitting it between subtasks if it's big:
+   */
+  private static final class Scoring extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final Outcomes outcomes;
+    private final long[] guesses;
+    private final double[] gains;
+    private final int from, to;
+    private final long deadline;
+
+    Scoring(Outcomes outcomes, long[] guesses, double[] gains, int from, int to, long deadline){
+      this.outcomes = outcomes;
+      this.guesses = guesses;
+      this.gains = gains;
+      this.from = from;
+      this.to = to;
+      this.deadline = deadline;
+    }
+
+    @Override
+    protected void compute(){
+      if (to - from > CHUNK){
+        int middle = (from + to) >>> 1;
+        invokeAll(new Scoring(outcomes, guesses, gains, from, middle, deadline),
+                new Scoring(outcomes, guesses, gains, middle, to, deadline));
+        return;
+      }
+      double[] joint = new double[outcomes.solutionCount * outcomes.outcomeCount];
+      double[] byOutcome = new double[outcomes.outcomeCount];
+      for (int i = from; i < to && System.nanoTime() < deadline; i++) gains[i] = outcomes.gain(guesses[i], joint, byOutcome);
+    }
+  }
+}
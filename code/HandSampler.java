@@ -0,0 +1,319 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * HandSampler estimates what a Deduction can't settle: how likely each Card is to be in each seat's hand
+ * or in the solution. It samples complete deals of the unknown Cards that agree with everything the Deduction
+ * has seen (hand sizes, refutations and non-refutations), and averages them.
+ *
+ * Each sample picks a solution from the candidates, then deals each remaining Card to a random seat that
+ * might hold it and has room, weighting the deal by the number of choices made so every consistent deal
+ * counts equally. Deals breaking a "holds one of" constraint are rejected.
+ *
+ * Samples are split across a fork/join pool, each task with its own SplittableRandom split from the seed,
+ * so an estimate depends only on the seed and the number of samples, not on the threads.
+ */
+public final class HandSampler {
+
+  /** The default number of samples per estimate, enough for a couple of percent of accuracy: */
+  public static final int DEFAULT_SAMPLES = 20_000;
+  /** Tasks with at most this many samples aren't split further: */
+  private static final int CHUNK = 1024;
+
+  private final ForkJoinPool pool;
+  private final int samples;
+
+  /** Constructs a sampler taking the default number of samples on the common pool: */
+  public HandSampler(){
+    this(ForkJoinPool.commonPool(), DEFAULT_SAMPLES);
+  }
+
+  /** Constructs a sampler taking the specified number of samples per estimate on the pool: */
+  public HandSampler(ForkJoinPool pool, int samples){
+    if (samples < 1) throw new IllegalArgumentException("At least one sample is needed");
+    this.pool = pool;
+    this.samples = samples;
+  }
+
+  /**
+   * The estimated probability of each Card being held by each seat, or being in the solution:
+   */
+  public static final class Estimate {
+    private final int seats;
+    /** Probabilities by card id, then seat (with the solution after the last seat): */
+    private final double[] probabilities;
+    /** The number of sampled deals that were consistent: */
+    public final int accepted;
+
+    private Estimate(int seats, double[] probabilities, int accepted){
+      this.seats = seats;
+      this.probabilities = probabilities;
+      this.accepted = accepted;
+    }
+
+    /** Returns the probability of the Card being in the seat's hand, and of it being in the solution: */
+    public double holds(int seat, Card c){ return probabilities[c.id * (seats + 1) + seat]; }
+    public double inSolution(Card c){ return probabilities[c.id * (seats + 1) + seats]; }
+
+    /** Returns the seat most likely to hold the Card, or -1 if it's most likely in the solution: */
+    public int likelyHolder(Card c){
+      int best = -1;
+      double p = inSolution(c);
+      for (int s = 0; s < seats; s++){
+        if (holds(s, c) > p){
+          best = s;
+          p = holds(s, c);
+        }
+      }
+      return best;
+    }
+  }
+
+  /**
+   * Estimates where the Cards are from what the Deduction has seen, using the seed for the samples:
+   * (The Deduction is copied first, so it can be updated while the sampler runs).
+   */
+  public Estimate estimate(Deduction d, long seed){
+    Problem problem = new Problem(d);
+    double[] totals = pool.invoke(new Sampling(problem, samples, new SplittableRandom(seed)));
+    int width = problem.seats + 1;
+    int cards = Long.SIZE - Long.numberOfLeadingZeros(problem.all);
+    double[] probabilities = new double[cards * width];
+    double weight = totals[totals.length - 2];
+    if (weight > 0){
+      for (int i = 0; i < probabilities.length; i++) probabilities[i] = totals[i] / weight;
+    }
+    return new Estimate(problem.seats, probabilities, (int) totals[totals.length - 1]);
+  }
+
+  /**
+   * Samples deals of the Cards consistent with what the Deduction has seen, using the seed,
+   * e.g. to work out how likely each outcome of a guess is:
+   */
+  public Deals sample(Deduction d, long seed){
+    return pool.invoke(new Collecting(new Problem(d), samples, new SplittableRandom(seed)));
+  }
+
+  /**
+   * Returns a task sampling deals consistent with what the Deduction knows now, for running later
+   * (e.g. on another thread, while the game carries on and the Deduction changes):
+   */
+  public Supplier<Deals> sampling(Deduction d, long seed){
+    Problem problem = new Problem(d);
+    return () -> pool.invoke(new Collecting(problem, samples, new SplittableRandom(seed)));
+  }
+
+  /**
+   * Sampled deals consistent with what was seen, each with a weight (their probabilities being proportional to it):
+   */
+  public static final class Deals {
+    public final int seats;
+    /** The number of deals: */
+    public final int count;
+    /** Each deal's hands (by seat) followed by its solution: */
+    private final long[] deals;
+    private final double[] weights;
+
+    private Deals(int seats, int count, long[] deals, double[] weights){
+      this.seats = seats;
+      this.count = count;
+      this.deals = deals;
+      this.weights = weights;
+    }
+
+    /** Returns the Cards held by a seat in the i-th deal, and its solution and weight: */
+    public long hand(int i, int seat){ return deals[i * (seats + 1) + seat]; }
+    public long solution(int i){ return deals[i * (seats + 1) + seats]; }
+    public double weight(int i){ return weights[i]; }
+
+    /** Returns these deals followed by the others: */
+    private Deals concat(Deals other){
+      long[] d = Arrays.copyOf(deals, deals.length + other.deals.length);
+      System.arraycopy(other.deals, 0, d, deals.length, other.deals.length);
+      double[] w = Arrays.copyOf(weights, count + other.count);
+      System.arraycopy(other.weights, 0, w, count, other.count);
+      return new Deals(seats, count + other.count, d, w);
+    }
+  }
+
+  /**
+   * A copy of what a Deduction knows, shared read-only by the sampling tasks:
+   */
+  private static final class Problem {
+    final int seats;
+    final long all;
+    final long[] categories;
+    final long candidates;
+    final long[] known;
+    final long[] possible;
+    final int[] room; // how many more Cards each seat holds than are known
+    final int[] clauseSeats;
+    final long[] clauseCards;
+    final long unknown; // Cards not known to be held by anyone
+
+    Problem(Deduction d){
+      seats = d.seats();
+      all = d.all();
+      CardRegistry.Category[] values = CardRegistry.Category.values();
+      categories = new long[values.length];
+      for (int i = 0; i < values.length; i++) categories[i] = d.category(values[i]);
+      candidates = d.candidates();
+      known = new long[seats];
+      possible = new long[seats];
+      room = new int[seats];
+      long held = 0;
+      for (int s = 0; s < seats; s++){
+        known[s] = d.known(s);
+        possible[s] = d.possible(s) & ~known[s];
+        room[s] = d.handSize(s) - Long.bitCount(known[s]);
+        held |= known[s];
+      }
+      unknown = all & ~held;
+      clauseSeats = new int[d.constraintCount()];
+      clauseCards = new long[clauseSeats.length];
+      for (int i = 0; i < clauseSeats.length; i++){
+        clauseSeats[i] = d.constraintSeat(i);
+        clauseCards[i] = d.constraintCards(i);
+      }
+    }
+  }
+
+  /**
+   * Takes a number of samples, splitting them between subtasks if there are many.
+   * Returns the weighted totals of each Card being in each place, then the total weight and number of accepted deals.
+   */
+  private static final class Sampling extends RecursiveTask<double[]> {
+    private static final long serialVersionUID = 1L;
+    private final Problem problem;
+    private final int count;
+    private final SplittableRandom random;
+
+    Sampling(Problem problem, int count, SplittableRandom random){
+      this.problem = problem;
+      this.count = count;
+      this.random = random;
+    }
+
+    @Override
+    protected double[] compute(){
+      if (count > CHUNK){
+        Sampling left = new Sampling(problem, count / 2, random.split());
+        left.fork();
+        double[] totals = new Sampling(problem, count - count / 2, random).compute();
+        double[] other = left.join();
+        for (int i = 0; i < totals.length; i++) totals[i] += other[i];
+        return totals;
+      }
+
+      Problem p = problem;
+      int width = p.seats + 1;
+      int cards = Long.SIZE - Long.numberOfLeadingZeros(p.all);
+      double[] totals = new double[cards * width + 2];
+      long[] deal = new long[width];
+      int[] room = new int[p.seats];
+      int[] options = new int[p.seats];
+
+      for (int n = 0; n < count; n++){
+        double weight = deal(p, random, deal, 0, room, options);
+        if (weight == 0) continue;
+
+        // Add the deal to the totals:
+        for (int s = 0; s < width; s++){
+          for (long b = deal[s]; b != 0; b &= b - 1) totals[Long.numberOfTrailingZeros(b) * width + s] += weight;
+        }
+        totals[totals.length - 2] += weight;
+        totals[totals.length - 1]++;
+      }
+      return totals;
+    }
+  }
+
+  /**
+   * Takes a number of samples, splitting them between subtasks if there are many, and keeps the consistent deals:
+   */
+  private static final class Collecting extends RecursiveTask<Deals> {
+    private static final long serialVersionUID = 1L;
+    private final Problem problem;
+    private final int count;
+    private final SplittableRandom random;
+
+    Collecting(Problem problem, int count, SplittableRandom random){
+      this.problem = problem;
+      this.count = count;
+      this.random = random;
+    }
+
+    @Override
+    protected Deals compute(){
+      if (count > CHUNK){
+        Collecting left = new Collecting(problem, count / 2, random.split());
+        left.fork();
+        Deals right = new Collecting(problem, count - count / 2, random).compute();
+        return left.join().concat(right);
+      }
+
+      Problem p = problem;
+      int width = p.seats + 1;
+      long[] deals = new long[count * width];
+      double[] weights = new double[count];
+      int[] room = new int[p.seats];
+      int[] options = new int[p.seats];
+      int accepted = 0;
+      for (int n = 0; n < count; n++){
+        double weight = deal(p, random, deals, accepted * width, room, options);
+        if (weight != 0) weights[accepted++] = weight;
+      }
+      return new Deals(p.seats, accepted, Arrays.copyOf(deals, accepted * width), Arrays.copyOf(weights, accepted));
+    }
+  }
+
+  /**
+   * Samples a deal into out from the offset: each seat's hand, then the solution.
+   * Returns the deal's weight, or 0 if it isn't consistent with what was seen.
+   */
+  private static double deal(Problem p, SplittableRandom random, long[] out, int offset, int[] room, int[] options){
+    double weight = 1;
+
+    // Pick a solution from the candidates of each category:
+    long solution = 0;
+    for (long category : p.categories){
+      long left = p.candidates & category;
+      int size = Long.bitCount(left);
+      solution |= nth(left, random.nextInt(size));
+      weight *= size;
+    }
+    out[offset + p.seats] = solution;
+
+    // Deal every other unknown Card to a seat that might hold it and has room:
+    System.arraycopy(p.room, 0, room, 0, p.seats);
+    System.arraycopy(p.known, 0, out, offset, p.seats);
+    for (long b = p.unknown & ~solution; b != 0; b &= b - 1){
+      long card = b & -b;
+      int choices = 0;
+      for (int s = 0; s < p.seats; s++){
+        if (room[s] > 0 && (p.possible[s] & card) != 0) options[choices++] = s;
+      }
+      if (choices == 0) return 0;
+      int s = options[random.nextInt(choices)];
+      out[offset + s] |= card;
+      room[s]--;
+      weight *= choices;
+    }
+    for (int s = 0; s < p.seats; s++){
+      if (room[s] != 0) return 0;
+    }
+    for (int i = 0; i < p.clauseSeats.length; i++){
+      if ((out[offset + p.clauseSeats[i]] & p.clauseCards[i]) == 0) return 0;
+    }
+    return weight;
+  }
+
+  /** Returns the bit of the n-th set bit (from 0) of the bitmask: */
+  private static long nth(long bits, int n){
+    for (int i = 0; i < n; i++) bits &= bits - 1;
+    return bits & -bits;
+  }
+}
@@ -0,0 +1,213 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * MapGenerator produces random, valid maps of a given size, number of estates and wall density,
+ * for stress testing the engine on boards bigger and stranger than the standard one.
+ *
+ * Estates are rectangular rooms with entrances on their sides, kept apart so every entrance
+ * leads onto a normal square. Walls are then scattered in small blocks (like the standard map's)
+ * away from the squares outside entrances and the starting squares. Each map is checked with a
+ * MapValidator, and generated again if it is invalid (e.g. if the walls cut off an estate).
+ *
+ * Each instance should only be used by one thread at a time.
+ *
+ * Usage: java MapGenerator ROWS COLS ESTATES DENSITY [--seed S] [--out FILE] [--count N]
+ */
+public final class MapGenerator {
+
+  /** Symbols given to estates, in order (the first five are the standard map's Estates): */
+  public static final String ESTATE_SYMBOLS = "hmvcpabdfgijklnoqrstuwyz";
+  /** Initials of the standard GameCharacters, each given a starting square by default: */
+  public static final String START_SYMBOLS = "LBPM";
+  /** The number of times a map is generated again if it's invalid: */
+  public static final int MAX_ATTEMPTS = 100;
+
+  public final int rows, cols;
+  public final int estateCount;
+  /** The fraction of free squares to make walls (0 to 0.5): */
+  public final double wallDensity;
+  private final String estateSymbols;
+  private final String startSymbols;
+  /** The largest side of an estate, scaled so the estates fit on the map: */
+  private final int maxSide;
+  private final MapValidator validator = new MapValidator();
+
+  /** Constructs a generator of maps with starting squares for the standard GameCharacters: */
+  public MapGenerator(int rows, int cols, int estateCount, double wallDensity){
+    this(rows, cols, wallDensity, ESTATE_SYMBOLS.substring(0, Math.max(0, Math.min(estateCount, ESTATE_SYMBOLS.length()))),
+            START_SYMBOLS);
+  }
+
+  /** Constructs a generator of maps with an estate for each estate symbol, and a starting square for each start symbol: */
+  public MapGenerator(int rows, int cols, double wallDensity, String estateSymbols, String startSymbols){
+    if (rows < 8 || cols < 8) throw new IllegalArgumentException("Maps must be at least 8x8");
+    if (estateSymbols.isEmpty() || estateSymbols.length() > ESTATE_SYMBOLS.length()){
+      throw new IllegalArgumentException("Between 1 and "+ESTATE_SYMBOLS.length()+" estates are supported");
+    }
+    if (wallDensity < 0 || wallDensity > 0.5) throw new IllegalArgumentException("Wall density must be between 0 and 0.5");
+    this.rows = rows;
+    this.cols = cols;
+    this.estateCount = estateSymbols.length();
+    this.wallDensity = wallDensity;
+    this.estateSymbols = estateSymbols;
+    this.startSymbols = startSymbols;
+    int perSide = (int) Math.ceil(Math.sqrt(estateCount));
+    this.maxSide = Math.max(3, Math.min(12, Math.min(rows, cols) / (perSide + 1)));
+  }
+
+  /**
+   * Generates a valid map using the random source:
+   */
+  public MapLayout generate(SplittableRandom random){
+    for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++){
+      MapLayout layout = attempt(random);
+      if (layout != null && validator.isValid(layout)) return layout;
+    }
+    throw new IllegalStateException("Couldn't generate a valid "+rows+"x"+cols+" map with "+estateCount
+            +" estates after "+MAX_ATTEMPTS+" attempts");
+  }
+
+  /**
+   * Makes one attempt at a map, returning null if the estates didn't fit:
+   */
+  private MapLayout attempt(SplittableRandom random){
+    int size = rows * cols;
+    byte[] types = new byte[size];
+    byte[] estateIds = new byte[size];
+    byte[] flags = new byte[size];
+    Arrays.fill(estateIds, (byte) -1);
+    Bitboard reserved = new Bitboard(size); // squares that must stay free
+
+    for (int id = 0; id < estateCount; id++){
+      if (!placeEstate(id, types, estateIds, flags, reserved, random)) return null;
+    }
+
+    // Choose the starting squares:
+    char[] starts = startSymbols.toCharArray();
+    int[] startCells = new int[starts.length];
+    for (int i = 0; i < starts.length; i++){
+      int cell = randomFreeCell(types, reserved, random);
+      if (cell == -1) return null;
+      reserved.set(cell);
+      startCells[i] = cell;
+    }
+
+    // Scatter walls in blocks of up to 2x2 until the density is reached:
+    int target = (int) (wallDensity * (size - reserved.cardinality()));
+    int walls = 0;
+    for (int tries = 0; walls < target && tries < target * 4; tries++){
+      int row = random.nextInt(rows), col = random.nextInt(cols);
+      int height = 1 + random.nextInt(2), width = 1 + random.nextInt(2);
+      for (int r = row; r < Math.min(rows, row + height); r++){
+        for (int c = col; c < Math.min(cols, col + width); c++){
+          int cell = r * cols + c;
+          if (types[cell] != MapLayout.NORMAL || reserved.get(cell) || walls == target) continue;
+          types[cell] = MapLayout.WALL;
+          walls++;
+        }
+      }
+    }
+
+    return new MapLayout(rows, cols, types, estateIds, flags, estateSymbols.toCharArray(), starts, startCells);
+  }
+
+  /**
+   * Places a rectangular Estate with 1 to 4 entrances on its sides, at least a square away from the
+   * edge of the map and from other estates (so the squares outside its entrances are normal squares).
+   * Returns false if there was no room for it.
+   */
+  private boolean placeEstate(int id, byte[] types, byte[] estateIds, byte[] flags, Bitboard reserved,
+                              SplittableRandom random){
+    for (int tries = 0; tries < 200; tries++){
+      int height = 3 + random.nextInt(maxSide - 2);
+      int width = 3 + random.nextInt(maxSide - 2);
+      if (height + 2 > rows || width + 2 > cols) continue;
+      int top = 1 + random.nextInt(rows - height - 1);
+      int left = 1 + random.nextInt(cols - width - 1);
+      if (!isClear(types, top - 1, left - 1, height + 2, width + 2)) continue;
+
+      for (int r = top; r < top + height; r++){
+        for (int c = left; c < left + width; c++){
+          types[r * cols + c] = MapLayout.ESTATE;
+          estateIds[r * cols + c] = (byte) id;
+        }
+      }
+
+      // Entrances go on sides, but not corners, and the square outside each one must stay free:
+      int entrances = 1 + random.nextInt(4);
+      for (int i = 0; i < entrances; i++){
+        int r, c, outer;
+        switch (random.nextInt(4)){
+          case 0: r = top; c = left + 1 + random.nextInt(width - 2); outer = (r - 1) * cols + c; break;
+          case 1: r = top + height - 1; c = left + 1 + random.nextInt(width - 2); outer = (r + 1) * cols + c; break;
+          case 2: r = top + 1 + random.nextInt(height - 2); c = left; outer = r * cols + c - 1; break;
+          default: r = top + 1 + random.nextInt(height - 2); c = left + width - 1; outer = r * cols + c + 1;
+        }
+        flags[r * cols + c] = MapLayout.ENTRANCE;
+        reserved.set(outer);
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /** Returns true if every square in the rectangle is a normal square: */
+  private boolean isClear(byte[] types, int top, int left, int height, int width){
+    for (int r = top; r < top + height; r++){
+      for (int c = left; c < left + width; c++){
+        if (types[r * cols + c] != MapLayout.NORMAL) return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns a random normal square that isn't reserved, or -1 if one couldn't be found: */
+  private int randomFreeCell(byte[] types, Bitboard reserved, SplittableRandom random){
+    for (int tries = 0; tries < 1000; tries++){
+      int cell = random.nextInt(types.length);
+      if (types[cell] == MapLayout.NORMAL && !reserved.get(cell)) return cell;
+    }
+    return -1;
+  }
+
+  /**
+   * Generates a map and prints it (or writes it to a file), or generates many maps and reports how fast:
+   */
+  public static void main(String... args) throws IOException {
+    if (args.length < 4){
+      System.out.println("Usage: java MapGenerator ROWS COLS ESTATES DENSITY [--seed S] [--out FILE] [--count N]");
+      return;
+    }
+    MapGenerator generator = new MapGenerator(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+            Integer.parseInt(args[2]), Double.parseDouble(args[3]));
+    long seed = new SplittableRandom().nextLong();
+    String out = null;
+    int count = 1;
+    for (int i = 4; i < args.length; i++){
+      String value = i + 1 < args.length ? args[i + 1] : null;
+      switch (args[i]){
+        case "--seed": seed = Long.parseLong(value); i++; break;
+        case "--out": out = value; i++; break;
+        case "--count": count = Integer.parseInt(value); i++; break;
+        default: throw new IllegalArgumentException("Unrecognized argument: "+args[i]);
+      }
+    }
+
+    SplittableRandom random = new SplittableRandom(seed);
+    if (count > 1){
+      long start = System.nanoTime();
+      for (int i = 0; i < count; i++) generator.generate(random);
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf("Generated and checked %d maps in %.2fs (%.0f maps/sec)%n", count, seconds, count / seconds);
+      return;
+    }
+    String text = MapLoader.format(generator.generate(random));
+    if (out == null) System.out.print(text);
+    else Files.write(Paths.get(out), text.getBytes(StandardCharsets.US_ASCII));
+  }
+}
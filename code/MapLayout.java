@@ -0,0 +1,345 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * MapLayout is a compact, immutable description of a Murder Madness map.
+ * Every cell is described by a few flat arrays indexed by row*cols+col (struct-of-arrays),
+ * rather than by a Square object, so it is cache-friendly and can be shared by every game
+ * played on the same map.
+ *
+ * The per-game state of the map (which cells are occupied) is kept separately in GridModel.
+ */
+public final class MapLayout {
+
+  /** Square types: */
+  public static final byte NORMAL = 0;
+  public static final byte WALL = 1;
+  public static final byte ESTATE = 2;
+
+  /** Flag bits, with the side of an outer EstateSquare stored as its ordinal + 1 between them: */
+  public static final byte ENTRANCE = 1;
+  public static final byte BLOCKED = 2; // walls and all estate squares except entrances
+  private static final int SIDE_SHIFT = 2;
+  public static final byte INNER = 32; // estate squares not on any side
+
+  public final int rows, cols;
+
+  /** Per cell arrays: */
+  private final byte[] types;
+  private final byte[] estateIds; // -1 if not an EstateSquare
+  private final byte[] flags;
+  private final short[] innerIndices; // index of an inner EstateSquare within its Estate, else -1
+  private final int[] outerCells; // the cell directly outside an entrance, else -1
+  private final byte[] entranceIndices; // index of an entrance within its Estate, else -1
+
+  /** Bitboards of walls, entrances, and cells a GameCharacter can never move onto: */
+  private final Bitboard walls, entrances, blocked;
+
+  /**
+   * The exits each cell blocks when occupied (the cells directly outside entrances), stored compactly:
+   * exits guardStarts[cell] to guardStarts[cell+1]-1 of guards, each packed as (estate id << 5 | entrance index).
+   */
+  private final int[] guardStarts;
+  private final short[] guards;
+
+  /** The maximum number of entrances an Estate can have, so its exits fit in an int mask. */
+  public static final int MAX_ENTRANCES = 32;
+  /** The maximum number of Estates on a map, so a set of them fits in a long mask. */
+  public static final int MAX_ESTATES = 64;
+
+  /** Per Estate arrays (indexed by estate id): */
+  private final char[] estateSymbols;
+  private final int[] innerCounts;
+  private final int[] entranceCounts;
+  /** The cells of every Estate's entrances, with estate id's entrances from entranceStarts[id]: */
+  private final int[] entranceStarts;
+  private final int[] entranceCells;
+
+  /** Starting positions of GameCharacters, by their initials: */
+  private final char[] startSymbols;
+  private final int[] startCells;
+
+  /** Steps from every cell to every Estate, computed the first time they're needed: */
+  private volatile DistanceFields distances;
+  /** Turns needed to reach every Estate with the standard dice, computed the first time they're needed: */
+  private volatile TurnTables turnTables;
+
+  /**
+   * Constructs a layout from its per cell types, estate ids and flags (only ENTRANCE needs to be set),
+   * then works out the remaining details of every estate square.
+   */
+  MapLayout(int rows, int cols, byte[] types, byte[] estateIds, byte[] flags, char[] estateSymbols,
+            char[] startSymbols, int[] startCells){
+    this(rows, cols, types, estateIds, flags, null, estateSymbols, startSymbols, startCells);
+  }
+
+  /**
+   * Constructs a layout whose estate squares may already have been worked out (when read from a compiled map),
+   * in which case flags are complete and outerCells is given. Otherwise it is null, and they are worked out here.
+   */
+  private MapLayout(int rows, int cols, byte[] types, byte[] estateIds, byte[] flags, int[] outerCells,
+                    char[] estateSymbols, char[] startSymbols, int[] startCells){
+    this.rows = rows;
+    this.cols = cols;
+    this.types = types;
+    this.estateIds = estateIds;
+    this.flags = flags;
+    this.estateSymbols = estateSymbols;
+    this.startSymbols = startSymbols;
+    this.startCells = startCells;
+    if (estateSymbols.length > MAX_ESTATES) throw new IllegalArgumentException("Too many estates: "+estateSymbols.length);
+    int size = rows * cols;
+    if (types.length != size || estateIds.length != size || flags.length != size){
+      throw new IllegalArgumentException("Expected "+size+" cells for a "+rows+"x"+cols+" map");
+    }
+    if (outerCells == null){
+      this.outerCells = new int[size];
+      computeEstateSquares();
+    }
+    else this.outerCells = outerCells;
+    this.innerIndices = new short[size];
+    this.entranceIndices = new byte[size];
+    this.walls = new Bitboard(size);
+    this.entrances = new Bitboard(size);
+    this.blocked = new Bitboard(size);
+    this.innerCounts = new int[estateSymbols.length];
+    this.entranceCounts = new int[estateSymbols.length];
+    this.guardStarts = new int[size + 1];
+    indexCells();
+    this.guards = computeGuards();
+
+    // List each Estate's entrances in order of their index:
+    this.entranceStarts = new int[estateSymbols.length + 1];
+    for (int id = 0; id < estateSymbols.length; id++) entranceStarts[id + 1] = entranceStarts[id] + entranceCounts[id];
+    this.entranceCells = new int[entranceStarts[estateSymbols.length]];
+    for (int cell = entrances.nextSetBit(0); cell != -1; cell = entrances.nextSetBit(cell + 1)){
+      entranceCells[entranceStarts[estateIds[cell]] + entranceIndices[cell]] = cell;
+    }
+  }
+
+  /** Returns the built-in map (standard.map), which is loaded only once and shared. */
+  public static MapLayout standard(){ return StandardHolder.LAYOUT; }
+
+  private static final class StandardHolder {
+    static final MapLayout LAYOUT = MapLoader.loadResource(MapLoader.STANDARD);
+  }
+
+  /**
+   * Runs through all estate squares to determine which are on the inside or outside.
+   * If outside, also determine its side, and if an entrance, the cell directly outside it:
+   */
+  private void computeEstateSquares(){
+    int[] entranceCounts = new int[estateSymbols.length];
+    for (int cell = 0; cell < types.length; cell++){
+      outerCells[cell] = -1;
+      if (types[cell] == WALL) flags[cell] = BLOCKED;
+      if (types[cell] != ESTATE) continue;
+
+      int row = row(cell);
+      int col = col(cell);
+      int id = estateIds[cell];
+      boolean entrance = (flags[cell] & ENTRANCE) != 0;
+      int sides = 0; // on how many sides of the estate it is. 2 means it is a corner.
+      Estate.Side side = null; // if its only on one side, this will hold that side.
+      int outer = -1;
+
+      // Determine what side(s) the cell is on by checking if an adjacent one isn't part of the Estate:
+      if (!isEstateSquare(row, col - 1)){ // Left side
+        sides++;
+        side = Estate.Side.LEFT;
+        outer = col > 0 ? cell - 1 : -1;
+      }
+      else if (!isEstateSquare(row, col + 1)){ // Right side
+        sides++;
+        side = Estate.Side.RIGHT;
+        outer = col + 1 < cols ? cell + 1 : -1;
+      }
+      if (!isEstateSquare(row - 1, col)){ // Top side
+        sides++;
+        side = Estate.Side.TOP;
+        outer = row > 0 ? cell - cols : -1;
+      }
+      else if (!isEstateSquare(row + 1, col)){ // Bottom side
+        sides++;
+        side = Estate.Side.BOTTOM;
+        outer = row + 1 < rows ? cell + cols : -1;
+      }
+
+      byte f = entrance ? ENTRANCE : BLOCKED;
+      if (sides == 1) f |= (side.ordinal() + 1) << SIDE_SHIFT;
+      if (sides == 0) f |= INNER;
+      flags[cell] = f;
+      if (entrance){
+        if (entranceCounts[id] == MAX_ENTRANCES) throw new IllegalArgumentException("Too many entrances to estate "+estateSymbols[id]);
+        entranceCounts[id]++;
+        outerCells[cell] = outer;
+      }
+      // If it has 2 sides it is a corner.
+    }
+  }
+
+  /**
+   * Fills in the bitboards, numbers each Estate's inner squares and entrances in map order,
+   * and counts the exits blocked by each cell into guardStarts:
+   */
+  private void indexCells(){
+    for (int cell = 0; cell < types.length; cell++){
+      innerIndices[cell] = -1;
+      entranceIndices[cell] = -1;
+      if (types[cell] == WALL) walls.set(cell);
+      if ((flags[cell] & BLOCKED) != 0) blocked.set(cell);
+      if ((flags[cell] & INNER) != 0) innerIndices[cell] = (short) innerCounts[estateIds[cell]]++;
+      if ((flags[cell] & ENTRANCE) == 0) continue;
+      entrances.set(cell);
+      entranceIndices[cell] = (byte) entranceCounts[estateIds[cell]]++;
+      if (outerCells[cell] != -1) guardStarts[outerCells[cell] + 1]++;
+    }
+  }
+
+  /**
+   * Builds the list of exits blocked by each cell, using the counts left in guardStarts:
+   */
+  private short[] computeGuards(){
+    for (int cell = 0; cell < types.length; cell++) guardStarts[cell + 1] += guardStarts[cell];
+    short[] list = new short[guardStarts[types.length]];
+    int[] next = Arrays.copyOf(guardStarts, types.length);
+    for (int cell = entrances.nextSetBit(0); cell != -1; cell = entrances.nextSetBit(cell + 1)){
+      int outer = outerCells[cell];
+      if (outer != -1) list[next[outer]++] = (short) (estateIds[cell] << 5 | entranceIndices[cell]);
+    }
+    return list;
+  }
+
+  /** Returns the number of bytes writeTo needs for this layout: */
+  int compiledSize(){
+    return 16 + types.length * 4 + estateSymbols.length * 2 + startSymbols.length * 6;
+  }
+
+  /**
+   * Writes this layout, including the worked out details of every estate square, to the buffer
+   * in the compiled map format read by readFrom. That is 4 bytes per cell: its type, estate id,
+   * flags, and the direction of the cell outside it (if an entrance), as the rest can be quickly derived.
+   */
+  void writeTo(ByteBuffer out){
+    out.putInt(rows).putInt(cols).putInt(estateSymbols.length).putInt(startSymbols.length);
+    out.put(types).put(estateIds).put(flags);
+    for (int cell = 0; cell < types.length; cell++){
+      int outer = outerCells[cell];
+      byte dir = 0;
+      if (outer == cell - 1) dir = 1;
+      else if (outer == cell + 1) dir = 2;
+      else if (outer == cell - cols) dir = 3;
+      else if (outer == cell + cols) dir = 4;
+      out.put(dir);
+    }
+    for (char c : estateSymbols) out.putChar(c);
+    for (char c : startSymbols) out.putChar(c);
+    for (int c : startCells) out.putInt(c);
+  }
+
+  /**
+   * Reads a layout written by writeTo, without needing to work out its estate squares again.
+   * The arrays are copied out of the buffer in bulk, so it may be memory-mapped.
+   */
+  static MapLayout readFrom(ByteBuffer in){
+    int rows = in.getInt(), cols = in.getInt(), estateCount = in.getInt(), startCount = in.getInt();
+    int size = rows * cols;
+    if (rows <= 0 || cols <= 0 || estateCount < 0 || startCount < 0 || in.remaining() != size * 4 + estateCount * 2 + startCount * 6){
+      throw new IllegalArgumentException("Corrupt compiled map");
+    }
+    byte[] types = new byte[size], estateIds = new byte[size], flags = new byte[size];
+    in.get(types).get(estateIds).get(flags);
+    int[] outerCells = new int[size];
+    byte[] dirs = new byte[size];
+    in.get(dirs);
+    for (int cell = 0; cell < size; cell++){
+      switch (dirs[cell]){
+        case 0: outerCells[cell] = -1; break;
+        case 1: outerCells[cell] = cell - 1; break;
+        case 2: outerCells[cell] = cell + 1; break;
+        case 3: outerCells[cell] = cell - cols; break;
+        default: outerCells[cell] = cell + cols;
+      }
+    }
+    char[] estateSymbols = new char[estateCount], startSymbols = new char[startCount];
+    in.asCharBuffer().get(estateSymbols);
+    in.position(in.position() + estateCount * 2);
+    in.asCharBuffer().get(startSymbols);
+    in.position(in.position() + startCount * 2);
+    int[] startCells = new int[startCount];
+    in.asIntBuffer().get(startCells);
+    in.position(in.position() + startCount * 4);
+    return new MapLayout(rows, cols, types, estateIds, flags, outerCells, estateSymbols, startSymbols, startCells);
+  }
+
+  /** Returns true if the position is on the map and is an estate square: */
+  private boolean isEstateSquare(int row, int col){
+    return row >= 0 && row < rows && col >= 0 && col < cols && types[row * cols + col] == ESTATE;
+  }
+
+  /** Cell index conversions: */
+  public int index(int row, int col){ return row * cols + col; }
+  public int row(int cell){ return cell / cols; }
+  public int col(int cell){ return cell % cols; }
+  public int size(){ return types.length; }
+
+  /** Per cell getters: */
+  public byte type(int cell){ return types[cell]; }
+  public int estateId(int cell){ return estateIds[cell]; }
+  public boolean isWall(int cell){ return walls.get(cell); }
+  public boolean isEntrance(int cell){ return entrances.get(cell); }
+  /** Returns true if a GameCharacter can never move onto the cell (walls and non-entrance estate squares). */
+  public boolean isStaticallyBlocked(int cell){ return blocked.get(cell); }
+  /** Returns a copy of the bitboard of cells that are always blocked, to track occupied cells on top of. */
+  public Bitboard blockedCells(){ return new Bitboard(blocked); }
+  public int entranceIndex(int cell){ return entranceIndices[cell]; }
+  public int innerIndex(int cell){ return innerIndices[cell]; }
+  public int outerCell(int cell){ return outerCells[cell]; }
+  /** Returns the side of the estate an outer square is on, or null if it's an inner or corner square. */
+  public Estate.Side side(int cell){
+    int s = (flags[cell] >> SIDE_SHIFT) & 7;
+    return s == 0 ? null : Estate.Side.values()[s - 1];
+  }
+
+  /** Per Estate getters: */
+  public int estateCount(){ return estateSymbols.length; }
+  public char estateSymbol(int id){ return estateSymbols[id]; }
+  public int innerCount(int id){ return innerCounts[id]; }
+  public int entranceCount(int id){ return entranceCounts[id]; }
+  /** Returns the cell of the entrance with the specified index into the Estate with the specified id. */
+  public int entranceCell(int id, int index){ return entranceCells[entranceStarts[id] + index]; }
+
+  /** Exits blocked when a cell is occupied, packed as (estate id << 5 | entrance index): */
+  public int guardStart(int cell){ return guardStarts[cell]; }
+  public int guardEnd(int cell){ return guardStarts[cell + 1]; }
+  public int guard(int i){ return guards[i]; }
+
+  /** Returns the distance fields of this map, computing them if this is the first time they're needed. */
+  public DistanceFields distances(){
+    DistanceFields d = distances;
+    if (d == null){
+      synchronized (this){
+        d = distances;
+        if (d == null) distances = d = new DistanceFields(this);
+      }
+    }
+    return d;
+  }
+
+  /** Returns the turn tables of this map for the standard dice, computing them if this is the first time they're needed. */
+  public TurnTables turnTables(){
+    TurnTables t = turnTables;
+    if (t == null){
+      synchronized (this){
+        t = turnTables;
+        if (t == null) turnTables = t = new TurnTables(this, Dice.twoD6Distribution());
+      }
+    }
+    return t;
+  }
+
+  /** Starting position getters: */
+  public int startCount(){ return startSymbols.length; }
+  public char startSymbol(int i){ return startSymbols[i]; }
+  public int startCell(int i){ return startCells[i]; }
+}
@@ -0,0 +1,242 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * MapLoader loads MapLayouts from map files, so map variants can be played without recompiling.
+ *
+ * A map file is text: every line holding a '.' is a row of the map, with one symbol after each '.':
+ * ' ' is a normal square, 'x' is a wall, other lower case letters are estate squares
+ * (with 'e' being an entrance to the estate to its left or above), and upper case letters are the
+ * starting squares of GameCharacters with that initial. Anything before a row's first '.' (such as its
+ * row number) and lines without a '.' (such as a header of column numbers) are ignored.
+ *
+ * The text is parsed in a single pass over its bytes. The resulting layout, including the worked out
+ * details of every estate square, is then saved next to the map file as a compiled map (the map file's
+ * name with a 'c' appended), which is memory-mapped on later loads instead of parsing the text again.
+ * Maps kept alongside the classes (like the standard map) are only parsed, as they're small and shouldn't be written to.
+ */
+public final class MapLoader {
+
+  /** The name of the built-in map, kept alongside the classes: */
+  public static final String STANDARD = "standard.map";
+
+  /** Compiled maps start with this, followed by the format version and the size and time of their map file: */
+  private static final int MAGIC = 0x4d4d4150; // "MMAP"
+  private static final int VERSION = 2;
+  private static final int HEADER = 24;
+
+  private MapLoader(){}
+
+  /**
+   * Loads the map file, from its compiled map if that is up to date,
+   * else by parsing it and then (re)writing its compiled map.
+   */
+  public static MapLayout load(Path file) throws IOException {
+    long size = Files.size(file);
+    long modified = Files.getLastModifiedTime(file).toMillis();
+    Path compiled = compiledPath(file);
+    MapLayout layout = readCompiled(compiled, size, modified);
+    if (layout != null) return layout;
+
+    layout = parse(Files.readAllBytes(file));
+    try {
+      writeCompiled(layout, compiled, size, modified);
+    } catch (IOException e){
+      // The compiled map only speeds up later loads, so carry on without it (e.g. if the directory is read only).
+    }
+    return layout;
+  }
+
+  /**
+   * Loads a map kept alongside the classes by parsing it:
+   * (It isn't compiled, so loading it never writes into the directory or archive of the classes).
+   */
+  public static MapLayout loadResource(String name){
+    URL url = MapLoader.class.getResource(name);
+    if (url == null) throw new IllegalArgumentException("Couldn't find map "+name);
+    try (InputStream in = url.openStream()){
+      return parse(in.readAllBytes());
+    } catch (IOException e){
+      throw new UncheckedIOException("Couldn't load map "+name, e);
+    }
+  }
+
+  /** Returns where the compiled map of a map file is kept: */
+  public static Path compiledPath(Path file){
+    return file.resolveSibling(file.getFileName() + "c");
+  }
+
+  /**
+   * Parses the text of a map file in a single pass, straight into the layout's per cell arrays:
+   */
+  public static MapLayout parse(byte[] text){
+    // Every cell takes at least 2 bytes ('.' and its symbol), so this many arrays are big enough:
+    int capacity = text.length / 2;
+    byte[] types = new byte[capacity];
+    byte[] estateIds = new byte[capacity];
+    byte[] flags = new byte[capacity];
+    char[] estates = new char[MapLayout.MAX_ESTATES];
+    int estateCount = 0;
+    byte[] estateBySymbol = new byte[128]; // estate id + 1 of each symbol seen so far
+    char[] starts = new char[16];
+    int[] startCells = new int[16];
+    int startCount = 0;
+
+    int rows = 0, cols = -1, col = 0, cell = 0;
+    for (int i = 0; i < text.length; i++){
+      byte b = text[i];
+      if (b == '\n'){
+        if (col > 0){ // end of a row
+          if (cols == -1) cols = col;
+          else if (col != cols) throw new IllegalArgumentException("Row "+rows+" has "+col+" squares instead of "+cols);
+          rows++;
+          col = 0;
+        }
+        continue;
+      }
+      if (b != '.' || i + 1 == text.length) continue;
+      byte token = text[++i];
+      if (token == '\n' || token == '\r'){ // the '.' closing a row
+        i--;
+        continue;
+      }
+      if (cols != -1 && col == cols) throw new IllegalArgumentException("Row "+rows+" has more than "+cols+" squares");
+      estateIds[cell] = -1;
+
+      if (token == ' ') types[cell] = MapLayout.NORMAL; // normal squares are blank
+      else if (token == 'x') types[cell] = MapLayout.WALL; // wall squares are 'x'
+
+      // Only Estate squares are lowercase (excluding 'x'):
+      else if (token >= 'a' && token <= 'z'){
+        types[cell] = MapLayout.ESTATE;
+        // If an entrance, get its Estate by checking the squares to the left and above:
+        if (token == 'e'){
+          if (col > 0 && estateIds[cell - 1] >= 0) estateIds[cell] = estateIds[cell - 1];
+          else if (rows > 0 && estateIds[cell - cols] >= 0) estateIds[cell] = estateIds[cell - cols];
+          else throw new IllegalArgumentException("Entrance outside an estate at "+rows+", "+col);
+          flags[cell] = MapLayout.ENTRANCE;
+        }
+        else {
+          if (estateBySymbol[token] == 0){
+            if (estateCount == MapLayout.MAX_ESTATES) throw new IllegalArgumentException("Too many estates");
+            estates[estateCount++] = (char) token;
+            estateBySymbol[token] = (byte) estateCount;
+          }
+          estateIds[cell] = (byte) (estateBySymbol[token] - 1);
+        }
+      }
+
+      // Else it must be the starting square of a GameCharacter:
+      else if (token >= 'A' && token <= 'Z'){
+        types[cell] = MapLayout.NORMAL;
+        if (startCount == starts.length){
+          starts = Arrays.copyOf(starts, startCount * 2);
+          startCells = Arrays.copyOf(startCells, startCount * 2);
+        }
+        starts[startCount] = (char) token;
+        startCells[startCount++] = cell;
+      }
+      else throw new IllegalArgumentException("Unknown symbol '"+(char) token+"' at "+rows+", "+col);
+      cell++;
+      col++;
+    }
+    if (col > 0){ // the last row didn't end with a new line
+      if (cols != -1 && col != cols) throw new IllegalArgumentException("Row "+rows+" has "+col+" squares instead of "+cols);
+      if (cols == -1) cols = col;
+      rows++;
+    }
+    if (rows == 0) throw new IllegalArgumentException("The map has no rows");
+
+    return new MapLayout(rows, cols, Arrays.copyOf(types, cell), Arrays.copyOf(estateIds, cell), Arrays.copyOf(flags, cell),
+            Arrays.copyOf(estates, estateCount), Arrays.copyOf(starts, startCount), Arrays.copyOf(startCells, startCount));
+  }
+
+  /**
+   * Formats a layout as the text of a map file, with a header of column numbers and each row numbered:
+   */
+  public static String format(MapLayout layout){
+    StringBuilder text = new StringBuilder("  ");
+    for (int col = 0; col < layout.cols; col++) text.append(' ').append(col % 10);
+    text.append('\n');
+
+    for (int row = 0; row < layout.rows; row++){
+      if (row < 10) text.append('0');
+      text.append(row);
+      for (int col = 0; col < layout.cols; col++){
+        int cell = layout.index(row, col);
+        char symbol = ' ';
+        if (layout.isEntrance(cell)) symbol = 'e';
+        else if (layout.type(cell) == MapLayout.WALL) symbol = 'x';
+        else if (layout.type(cell) == MapLayout.ESTATE) symbol = layout.estateSymbol(layout.estateId(cell));
+        else {
+          for (int i = 0; i < layout.startCount(); i++){
+            if (layout.startCell(i) == cell) symbol = layout.startSymbol(i);
+          }
+        }
+        text.append('.').append(symbol);
+      }
+      text.append(".\n");
+    }
+    return text.toString();
+  }
+
+  /**
+   * Memory-maps and reads a compiled map, returning null if it doesn't exist, is corrupt,
+   * or was compiled from a different version of its map file:
+   */
+  public static MapLayout readCompiled(Path compiled, long sourceSize, long sourceModified) throws IOException {
+    if (!Files.isRegularFile(compiled)) return null;
+    try (FileChannel channel = FileChannel.open(compiled, StandardOpenOption.READ)){
+      if (channel.size() < HEADER) return null;
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return null;
+      if (buffer.getLong() != sourceSize || buffer.getLong() != sourceModified) return null;
+      return MapLayout.readFrom(buffer);
+    } catch (IllegalArgumentException e){
+      return null; // corrupt, so it'll be compiled again
+    }
+  }
+
+  /**
+   * Writes the compiled map of a layout, tagged with the size and time of the map file it came from.
+   * It's written to a temporary file first, so a half written compiled map is never read.
+   */
+  public static void writeCompiled(MapLayout layout, Path compiled, long sourceSize, long sourceModified) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER + layout.compiledSize()).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(VERSION).putLong(sourceSize).putLong(sourceModified);
+    layout.writeTo(buffer);
+    buffer.flip();
+
+    Path temp = compiled.resolveSibling(compiled.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING)){
+      while (buffer.hasRemaining()) channel.write(buffer);
+    }
+    Files.move(temp, compiled, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Compiles the specified map files ahead of time:
+   */
+  public static void main(String... args) throws IOException {
+    for (String arg : args){
+      long start = System.nanoTime();
+      MapLayout layout = load(Paths.get(arg));
+      System.out.printf("%s: %dx%d, %d estates (%.2f ms)%n", arg, layout.rows, layout.cols, layout.estateCount(),
+              (System.nanoTime() - start) / 1e6);
+    }
+  }
+}
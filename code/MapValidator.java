@@ -0,0 +1,105 @@
+import java.util.Arrays;
+
+/**
+ * MapValidator checks that a MapLayout can be played on:
+ * every Estate has an entrance, every entrance leads out onto a square a GameCharacter can stand on,
+ * and every Estate and starting square can be reached from the first starting square.
+ *
+ * It reuses its buffers between maps, so checking many small maps allocates almost nothing.
+ * Each instance should only be used by one thread at a time.
+ */
+public final class MapValidator {
+
+  /** Search buffers, indexed by cell. A cell has been visited by this check if its stamp matches stamp. */
+  private int[] queue = new int[0];
+  private int[] stamps = new int[0];
+  private int stamp;
+
+  /**
+   * Returns a description of the first problem found with the map, or null if it is valid:
+   */
+  public String check(MapLayout layout){
+    // Every entrance must lead onto a normal square:
+    for (int id = 0; id < layout.estateCount(); id++){
+      if (layout.entranceCount(id) == 0) return "Estate '"+layout.estateSymbol(id)+"' has no entrances";
+      for (int i = 0; i < layout.entranceCount(id); i++){
+        int cell = layout.entranceCell(id, i);
+        int outer = layout.outerCell(cell);
+        if (outer == -1) return "Entrance at "+position(layout, cell)+" leads off the map";
+        if (layout.type(outer) == MapLayout.WALL) return "Entrance at "+position(layout, cell)+" leads into a wall";
+        if (layout.type(outer) == MapLayout.ESTATE) return "Entrance at "+position(layout, cell)+" leads into an estate";
+      }
+    }
+
+    // Everything must be reachable from the first starting square (or any normal square if there are none):
+    int start = layout.startCount() > 0 ? layout.startCell(0) : firstNormalCell(layout);
+    if (start == -1) return "The map has no normal squares";
+    search(layout, start);
+    for (int i = 1; i < layout.startCount(); i++){
+      int cell = layout.startCell(i);
+      if (stamps[cell] != stamp) return "Starting square '"+layout.startSymbol(i)+"' at "+position(layout, cell)+" is cut off";
+    }
+    for (int id = 0; id < layout.estateCount(); id++){
+      if (!reached(layout, id)) return "Estate '"+layout.estateSymbol(id)+"' can't be reached";
+    }
+    return null;
+  }
+
+  /** Returns true if the map is valid: */
+  public boolean isValid(MapLayout layout){ return check(layout) == null; }
+
+  /**
+   * Breadth-first search over the squares a GameCharacter can walk through, ignoring other characters:
+   */
+  private void search(MapLayout layout, int start){
+    int size = layout.size();
+    if (stamps.length < size){
+      stamps = new int[size];
+      queue = new int[size];
+      stamp = 0;
+    }
+    if (++stamp == 0){ // stamps wrapped around, so clear them all
+      Arrays.fill(stamps, 0);
+      stamp = 1;
+    }
+
+    int cols = layout.cols;
+    int head = 0, tail = 0;
+    stamps[start] = stamp;
+    queue[tail++] = start;
+    while (head < tail){
+      int cell = queue[head++];
+      int col = cell % cols;
+      if (col > 0) tail = visit(layout, cell - 1, tail);
+      if (col + 1 < cols) tail = visit(layout, cell + 1, tail);
+      if (cell >= cols) tail = visit(layout, cell - cols, tail);
+      if (cell + cols < size) tail = visit(layout, cell + cols, tail);
+    }
+  }
+
+  private int visit(MapLayout layout, int cell, int tail){
+    if (stamps[cell] == stamp || layout.isStaticallyBlocked(cell) || layout.isEntrance(cell)) return tail;
+    stamps[cell] = stamp;
+    queue[tail] = cell;
+    return tail + 1;
+  }
+
+  /** Returns true if the last search reached the square outside one of the Estate's entrances: */
+  private boolean reached(MapLayout layout, int id){
+    for (int i = 0; i < layout.entranceCount(id); i++){
+      if (stamps[layout.outerCell(layout.entranceCell(id, i))] == stamp) return true;
+    }
+    return false;
+  }
+
+  private static int firstNormalCell(MapLayout layout){
+    for (int cell = 0; cell < layout.size(); cell++){
+      if (layout.type(cell) == MapLayout.NORMAL) return cell;
+    }
+    return -1;
+  }
+
+  private static String position(MapLayout layout, int cell){
+    return layout.row(cell)+", "+layout.col(cell);
+  }
+}
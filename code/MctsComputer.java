@@ -0,0 +1,102 @@
+import java.io.PrintStream;
+
+/**
+ * MctsComputer is a Computer that decides what to do on its turn with an MctsSearch:
+ * whether to head for an Estate (and which), guess in one (and with what), accuse, or end its turn.
+ * The search plays out deals of the hidden Cards sampled from its Deduction, so it weighs
+ * the chance of winning by accusing now against learning more first.
+ *
+ * It still accuses straight away once its Deduction has worked out the solution, and refutes like a Computer.
+ *
+ * Each decision is made by a deadline (the search's time budget, including sampling the deals), taking the best
+ * action found by then. While a person takes their turn, it ponders its own next turn in the background,
+ * and carries on with that search when its turn comes (unless it has learnt something in the meantime).
+ */
+public class MctsComputer extends Computer {
+
+    private final HandSampler sampler;
+    private final MctsSearch search;
+
+    /**
+     * Constructs a new MctsComputer with a specified number and character to control, searching on every core:
+     */
+    public MctsComputer(int number, GameCharacter c) {
+        this(number, c, new HandSampler(), new MctsSearch());
+    }
+
+    /**
+     * Constructs a new MctsComputer sampling deals with the sampler and choosing actions with the search:
+     */
+    public MctsComputer(int number, GameCharacter c, HandSampler sampler, MctsSearch search) {
+        super(number, c);
+        this.sampler = sampler;
+        this.search = search;
+    }
+
+    /**
+     * Searches for the best action and takes it. After moving into an Estate, it searches again
+     * to choose whether (and what) to guess there.
+     */
+    @Override
+    public void startTurn(Board board){
+        PrintStream out = board.getOut();
+        out.println("Computer's turn ("+character+"):");
+        board.pause(2000);
+        Deduction d = getDeduction(board);
+
+        if (!solveAttempted()){
+            if (d.isSolved()){
+                solve(board, board.getRegistry().set(d.solution()));
+                return;
+            }
+            if (act(board, d, false)) return;
+        }
+        out.println("Computer has ended turn.");
+        board.pause(2000);
+    }
+
+    /**
+     * Searches for the best action (after moving this turn, if moved) and takes it.
+     * Returns true if the turn is over because it accused or guessed.
+     */
+    private boolean act(Board board, Deduction d, boolean moved){
+        long budget = search.getBudgetNanos();
+        long deadline = budget > 0 ? System.nanoTime() + budget : Long.MAX_VALUE;
+        SimGame game = SimGame.of(board, d, moved);
+        HandSampler.Deals deals = sampler.sample(d, board.getRandom().nextLong());
+        MctsSearch.Result result = search.search(game, d.self, d.fingerprint(), deals, board.getRandom().nextLong(), deadline);
+        board.getOut().printf("Computer considered %d playouts (%.0f/sec)%s.%n", result.playouts, result.playoutsPerSecond(),
+                result.pondered > 0 ? " after pondering "+result.pondered : "");
+
+        int action = result.action;
+        if (action == SimGame.END) return false;
+        if (action == SimGame.ACCUSE){
+            solve(board, board.getRegistry().set(game.accusation(game.seen(d.self), result.solutionOdds)));
+            return true;
+        }
+        int estate = game.movedTo(action);
+        if (estate != -1){
+            Estate target = board.getModel().getEstate(estate);
+            return moveTowards(board, CardSet.bit(target)) && act(board, d, true);
+        }
+        CardRegistry registry = board.getRegistry();
+        guess(board, (GameCharacter) registry.get(game.guessedCharacter(action)), (Weapon) registry.get(game.guessedWeapon(action)));
+        return true;
+    }
+
+    /**
+     * Starts searching for its next turn in the background, from what it knows now (sampling deals in the background too):
+     * (Seeded by the Board's hash of the position rather than the game's random source, which it mustn't change).
+     */
+    @Override
+    public void startPondering(Board board){
+        if (solveAttempted() || board.gameOver()) return;
+        Deduction d = getDeduction(board);
+        if (d.isSolved()) return;
+        long seed = board.getHash();
+        search.ponder(SimGame.of(board, d, false), d.self, d.fingerprint(), sampler.sampling(d, seed), seed);
+    }
+
+    @Override
+    public void stopPondering(){ search.stopPondering(); }
+}
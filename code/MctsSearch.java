@@ -0,0 +1,385 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * MctsSearch chooses a seat's action by information-set Monte Carlo tree search.
+ * Each iteration picks a deal of the hidden Cards (in proportion to how likely the HandSampler found it),
+ * plays the seat's decisions down a tree shared by every deal, using UCB1 scaled by how often each action was
+ * available, then plays the game out with the SimGame policy and counts whether the seat won.
+ *
+ * The tree only branches on the searching seat's decisions: the other seats play the policy between them
+ * (so the tree is "open loop", and their moves and the dice are part of each iteration's chance).
+ *
+ * The tree is kept off the heap in a NodeArena, reset at the start of each search.
+ * Iterations run on several fork/join workers at once, sharing the tree without locks. A worker counts a visit as soon
+ * as it selects a node (a "virtual loss" until the playout's result is added), so the others spread out.
+ * With one worker, results only depend on the seed and the number of iterations.
+ *
+ * A search can also ponder: search in the background for a seat's next decision while waiting for its turn,
+ * carrying on with the same tree once its turn comes. Every search ponders on one pool, a thread per core,
+ * however many seats are pondering at once. Searches stop at a deadline with the best action so far.
+ *
+ * With a TranspositionTable, each decision's statistics are also kept by the hash of the state it was made in,
+ * shared between every path (and search) reaching that state: selection uses whichever of the node's own and
+ * the table's statistics has more visits.
+ */
+public final class MctsSearch {
+
+  /** The default number of iterations per search, and the time a search may take (no limit if 0): */
+  public static final int DEFAULT_ITERATIONS = 20_000;
+  public static final long DEFAULT_BUDGET_NANOS = 1_000_000_000L;
+  /** The UCB1 exploration constant (rewards being 0 or 1): */
+  public static final double EXPLORATION = 0.7;
+  /** The default number of transposition table entries (16 bytes each): */
+  public static final int DEFAULT_TABLE_ENTRIES = 1 << 18;
+  /** The pool every search ponders on (its threads being daemons, so they don't keep the program running): */
+  private static final ForkJoinPool PONDER_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+  private final ForkJoinPool pool;
+  private final int threads;
+  private final int iterations;
+  private final long budgetNanos;
+  private final TranspositionTable table;
+  private final NodeArena arena;
+
+  /**
+   * Constructs a search using every core of the common pool, with the default iterations, time budget,
+   * transposition table and arena sizes:
+   */
+  public MctsSearch(){
+    this(ForkJoinPool.commonPool(), Math.max(1, ForkJoinPool.getCommonPoolParallelism()), DEFAULT_ITERATIONS, DEFAULT_BUDGET_NANOS,
+            new TranspositionTable(DEFAULT_TABLE_ENTRIES), new NodeArena(NodeArena.DEFAULT_NODES));
+  }
+
+  /**
+   * Constructs a search running threads workers on the pool, for up to a number of iterations and budgetNanos (no limit if 0),
+   * sharing statistics through the table (if not null) and growing its tree in the arena:
+   * (Only one search can run on an arena at a time).
+   */
+  public MctsSearch(ForkJoinPool pool, int threads, int iterations, long budgetNanos, TranspositionTable table, NodeArena arena){
+    if (threads < 1 || iterations < 1) throw new IllegalArgumentException("At least one thread and iteration are needed");
+    this.pool = pool;
+    this.threads = threads;
+    this.iterations = iterations;
+    this.budgetNanos = budgetNanos;
+    this.table = table;
+    this.arena = arena;
+  }
+
+  /** Returns the time a search may take (0 if it has no limit): */
+  public long getBudgetNanos(){ return budgetNanos; }
+
+  /** The action chosen by a search, with how many playouts it took to choose it: */
+  public static final class Result {
+    public final int action;
+    public final int playouts;
+    /** The playouts made while pondering whose tree the search carried on with: */
+    public final int pondered;
+    public final long nanos;
+    /** The probability of each Card (by card id) being in the solution, over the deals searched: */
+    public final double[] solutionOdds;
+
+    private Result(int action, int playouts, int pondered, long nanos, double[] solutionOdds){
+      this.action = action;
+      this.playouts = playouts;
+      this.pondered = pondered;
+      this.nanos = nanos;
+      this.solutionOdds = solutionOdds;
+    }
+
+    public double playoutsPerSecond(){ return nanos == 0 ? 0 : playouts * 1e9 / nanos; }
+  }
+
+  /**
+   * A search running on the ponder pool until stopped (or it has made as many iterations as a search),
+   * sampling its deals first:
+   */
+  private final class Pondering extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    final SimGame game;
+    final int self;
+    final long basis;
+    final Supplier<HandSampler.Deals> sampling;
+    final long seed;
+    final AtomicInteger remaining = new AtomicInteger(iterations);
+    final AtomicInteger playouts = new AtomicInteger();
+    /** Whether it has started growing a tree in the arena: */
+    boolean grown;
+
+    Pondering(SimGame game, int self, long basis, Supplier<HandSampler.Deals> sampling, long seed){
+      this.game = game;
+      this.self = self;
+      this.basis = basis;
+      this.sampling = sampling;
+      this.seed = seed;
+    }
+
+    @Override
+    protected void compute(){
+      HandSampler.Deals deals = sampling.get();
+      double[] cumulative = cumulativeWeights(deals);
+      double[] odds = solutionOdds(deals, cumulative);
+      // Leave the arena alone if there's nothing to search, or it was stopped while sampling:
+      if (odds == null || remaining.get() <= 0) return;
+
+      arena.reset();
+      if (table != null) table.newSearch();
+      grown = true;
+      invokeAll(workers(game, self, deals, cumulative, odds, remaining, playouts, Long.MAX_VALUE, seed));
+    }
+  }
+
+  /** The search pondering, if there is one: */
+  private Pondering pondering;
+  /**
+   * The seat whose pondering grew the tree in the arena (-1 if it's from a search), what it knew then
+   * (a Deduction.fingerprint()), and its playouts:
+   */
+  private int ponderedSelf = -1;
+  private long ponderedBasis;
+  private int ponderedPlayouts;
+
+  /**
+   * Searches for the seat's best action in the game, over the sampled deals, using the seed for the choices and dice.
+   * The search stops at the deadline (a System.nanoTime()), if it comes before the search's own limits, returning the best
+   * action found so far. Returns END if no deal is consistent (or there was no time to play any out).
+   *
+   * If the seat was pondering its next turn, hasn't moved yet and has learnt nothing since (its basis, e.g. a
+   * Deduction.fingerprint(), being the same), the search carries on with the tree it grew. Otherwise that tree
+   * was grown from deals that are no longer likely (or possible), so it's thrown away.
+   */
+  public Result search(SimGame game, int self, long basis, HandSampler.Deals deals, long seed, long deadline){
+    long start = System.nanoTime();
+    stopPondering();
+    int pondered = ponderedSelf == self && ponderedBasis == basis && !game.hasMoved() ? ponderedPlayouts : -1;
+    ponderedSelf = -1;
+    double[] cumulative = cumulativeWeights(deals);
+    double[] odds = solutionOdds(deals, cumulative);
+    if (odds == null) return new Result(SimGame.END, 0, 0, System.nanoTime() - start, new double[Long.SIZE]);
+
+    if (pondered == -1) arena.reset();
+    if (table != null) table.newSearch();
+    if (budgetNanos > 0) deadline = Math.min(deadline, start + budgetNanos);
+    AtomicInteger remaining = new AtomicInteger(iterations), playouts = new AtomicInteger();
+    Worker[] workers = workers(game, self, deals, cumulative, odds, remaining, playouts, deadline, seed);
+    if (threads == 1) workers[0].compute();
+    else pool.invoke(new RecursiveAction(){
+      @Override
+      protected void compute(){ invokeAll(workers); }
+    });
+
+    // Choose the most visited action:
+    int best = SimGame.END, mostVisits = 0;
+    for (int a = 0; arena.child(NodeArena.ROOT, 0) != -1 && a < game.actionCount(); a++){
+      int visits = arena.visits(arena.child(NodeArena.ROOT, a));
+      if (visits > mostVisits){
+        best = a;
+        mostVisits = visits;
+      }
+    }
+    return new Result(best, playouts.get(), Math.max(0, pondered), System.nanoTime() - start, odds);
+  }
+
+  /**
+   * Starts searching for the seat's next decision in the background (e.g. while someone else is taking their turn),
+   * until stopPondering(), the next search, or it has made as many iterations as a search would (so the tree it grows
+   * doesn't outweigh the search that carries on with it). The game may be at another seat's turn: they're played by
+   * the policy. The basis is what the seat knows (e.g. a Deduction.fingerprint()), for the search to check it's unchanged.
+   * The deals are sampled in the background too, so the caller only waits for the game to be copied.
+   */
+  public void ponder(SimGame game, int self, long basis, Supplier<HandSampler.Deals> sampling, long seed){
+    stopPondering();
+    ponderedSelf = -1;
+    Pondering p = new Pondering(game, self, basis, sampling, seed);
+    PONDER_POOL.execute(p);
+    pondering = p;
+  }
+
+  /**
+   * Stops pondering (if pondering), keeping the tree for the seat's next search:
+   */
+  public void stopPondering(){
+    Pondering p = pondering;
+    if (p == null) return;
+    pondering = null;
+    p.remaining.set(0);
+    p.quietlyJoin();
+    if (!p.grown) return;
+    ponderedSelf = p.self;
+    ponderedBasis = p.basis;
+    ponderedPlayouts = p.playouts.get();
+  }
+
+  private Worker[] workers(SimGame game, int self, HandSampler.Deals deals, double[] cumulative, double[] odds,
+                           AtomicInteger remaining, AtomicInteger playouts, long deadline, long seed){
+    SplittableRandom random = new SplittableRandom(seed);
+    Worker[] workers = new Worker[threads];
+    for (int i = 0; i < threads; i++){
+      workers[i] = new Worker(game, self, deals, cumulative, odds, arena, table, remaining, playouts, deadline, random.split());
+    }
+    return workers;
+  }
+
+  /** Returns the running totals of the deals' weights: */
+  private static double[] cumulativeWeights(HandSampler.Deals deals){
+    double[] cumulative = new double[deals.count];
+    double total = 0;
+    for (int i = 0; i < deals.count; i++){
+      total += deals.weight(i);
+      cumulative[i] = total;
+    }
+    return cumulative;
+  }
+
+  /** Returns the probability of each Card being in the solution over the deals, or null if there are none: */
+  private static double[] solutionOdds(HandSampler.Deals deals, double[] cumulative){
+    if (deals.count == 0 || cumulative[deals.count - 1] == 0) return null;
+    double[] odds = new double[Long.SIZE];
+    for (int i = 0; i < deals.count; i++){
+      for (long b = deals.solution(i); b != 0; b &= b - 1) odds[Long.numberOfTrailingZeros(b)] += deals.weight(i);
+    }
+    for (int i = 0; i < odds.length; i++) odds[i] /= cumulative[deals.count - 1];
+    return odds;
+  }
+
+  /**
+   * Runs iterations until there are none left or time runs out:
+   */
+  private static final class Worker extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final SimGame root;
+    private final int self;
+    private final HandSampler.Deals deals;
+    private final double[] cumulative;
+    private final double[] odds;
+    private final NodeArena tree;
+    private final TranspositionTable table;
+    private final AtomicInteger remaining;
+    private final AtomicInteger playouts;
+    private final long deadline;
+    private final SplittableRandom random;
+
+    Worker(SimGame root, int self, HandSampler.Deals deals, double[] cumulative, double[] odds, NodeArena tree,
+           TranspositionTable table, AtomicInteger remaining, AtomicInteger playouts, long deadline, SplittableRandom random){
+      this.root = root;
+      this.self = self;
+      this.deals = deals;
+      this.cumulative = cumulative;
+      this.odds = odds;
+      this.tree = tree;
+      this.table = table;
+      this.remaining = remaining;
+      this.playouts = playouts;
+      this.deadline = deadline;
+      this.random = random;
+    }
+
+    @Override
+    protected void compute(){
+      SimGame game = root.copy();
+      int[] actions = new int[game.actionCount()];
+      int[] path = new int[SimGame.MAX_TURNS * 2];
+      long[] states = new long[path.length];
+      int[] taken = new int[path.length];
+      while (remaining.getAndDecrement() > 0 && System.nanoTime() < deadline){
+        root.copyInto(game);
+        game.deal(deals, pick(), self);
+
+        // Select down the tree (expanding one node), with the other seats playing the policy in between:
+        int depth = 0;
+        int node = NodeArena.ROOT;
+        boolean expanded = false;
+        while (!game.isOver() && !expanded){
+          if (game.current() != self){
+            game.playTurn(random);
+            continue;
+          }
+          int n = game.actions(actions);
+          long state = table == null ? 0 : game.hash();
+          // Stop at a leaf if the arena is full:
+          if (!tree.expand(node, actions.length)) break;
+          int action = select(node, state, actions, n);
+          int child = tree.child(node, action);
+          // (Nodes are new to the tree until first visited, even if the table has seen their state):
+          expanded = tree.addVisits(child, 1) == 0;
+          game.apply(action, random, odds);
+          states[depth] = state;
+          taken[depth] = action;
+          path[depth++] = child;
+          node = child;
+        }
+
+        // Play out the rest of the game, and add the result up the path:
+        game.playOut(random);
+        int win = game.winner() == self ? 1 : 0;
+        for (int i = 0; table != null && i < depth; i++) record(states[i], taken[i], win);
+        for (int i = 0; win != 0 && i < depth; i++) tree.addWins(path[i], win);
+        playouts.incrementAndGet();
+      }
+    }
+
+    /**
+     * Returns the available action to try in the state: one not tried yet if there is one,
+     * else the one with the highest UCB1 score. Counts each available action's availability.
+     */
+    private int select(int node, long state, int[] actions, int n){
+      int best = -1;
+      double bestScore = Double.NEGATIVE_INFINITY;
+      int untried = 0;
+      for (int i = 0; i < n; i++){
+        int child = tree.child(node, actions[i]);
+        double visits = tree.visits(child);
+        double wins = tree.wins(child);
+        if (table != null){
+          long data = table.probe(SimGame.hash(state, actions[i]));
+          if (TranspositionTable.visits(data) > visits){
+            visits = TranspositionTable.visits(data);
+            wins = TranspositionTable.wins(data);
+          }
+        }
+        if (visits == 0){
+          // Pick uniformly among the untried actions:
+          if (random.nextInt(++untried) == 0) best = actions[i];
+          continue;
+        }
+        int available = tree.addAvailable(child, 1) + 1;
+        if (untried > 0) continue;
+        double score = wins / visits + EXPLORATION * Math.sqrt(Math.log(available) / visits);
+        if (score > bestScore){
+          best = actions[i];
+          bestScore = score;
+        }
+      }
+      return best;
+    }
+
+    /**
+     * Adds a playout's result to the table, for the action taken in the state and for the state,
+     * making the action the state's best if it's now been tried the most there:
+     */
+    private void record(long state, int action, int win){
+      long key = SimGame.hash(state, action);
+      table.add(key, 1, win, -1);
+      int visits = TranspositionTable.visits(table.probe(key));
+      int best = TranspositionTable.action(table.probe(state));
+      boolean better = action < TranspositionTable.MAX_ACTIONS && (best == -1 || best == action
+              || TranspositionTable.visits(table.probe(SimGame.hash(state, best))) < visits);
+      table.add(state, 1, win, better ? action : -1);
+    }
+
+    /** Returns the index of a random deal, in proportion to the deals' weights: */
+    private int pick(){
+      double r = random.nextDouble() * cumulative[cumulative.length - 1];
+      int low = 0, high = cumulative.length - 1;
+      while (low < high){
+        int middle = (low + high) >>> 1;
+        if (cumulative[middle] <= r) low = middle + 1;
+        else high = middle;
+      }
+      return low;
+    }
+  }
+}
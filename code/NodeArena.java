@@ -0,0 +1,92 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NodeArena stores a search tree off the Java heap, so a search can grow millions of nodes without
+ * creating garbage for the collector (and pausing the GUI or other games).
+ * Nodes are fixed-size records in a direct ByteBuffer, referred to by index: its visits, wins, how often
+ * it was available, and the index of its block of children (one per action, 0 if it has none yet).
+ *
+ * Records are updated atomically through VarHandles, so search threads share the tree without locks.
+ * New blocks are allocated by bumping an index, and reset() discards the whole tree at once, between turns.
+ * When the arena is full, nodes just stop getting children.
+ */
+public final class NodeArena {
+
+  /** The default number of node records (16 bytes each): */
+  public static final int DEFAULT_NODES = 1 << 20;
+
+  /** The record layout, in ints: */
+  private static final int VISITS = 0, WINS = 1, AVAILABLE = 2, CHILDREN = 3;
+  private static final int RECORD_INTS = 4;
+  private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+  private final ByteBuffer records;
+  private final int capacity;
+  /** The index of the next free record (record 0 being the root): */
+  private final AtomicInteger top = new AtomicInteger(1);
+
+  /** Constructs an arena holding up to the specified number of nodes: */
+  public NodeArena(int capacity){
+    if (capacity < 1 || capacity > Integer.MAX_VALUE / (RECORD_INTS * 4)) throw new IllegalArgumentException("Invalid arena size: "+capacity);
+    this.capacity = capacity;
+    this.records = ByteBuffer.allocateDirect(capacity * RECORD_INTS * 4).order(ByteOrder.nativeOrder());
+  }
+
+  /** The index of the root: */
+  public static final int ROOT = 0;
+
+  /** Discards every node but the root, and clears the root: */
+  public void reset(){
+    top.set(1);
+    clear(ROOT, 1);
+  }
+
+  /** Returns the number of nodes in use, and the most the arena can hold: */
+  public int size(){ return Math.min(top.get(), capacity); }
+  public int capacity(){ return capacity; }
+
+  /** Node getters: */
+  public int visits(int node){ return get(node, VISITS); }
+  public int wins(int node){ return get(node, WINS); }
+  public int available(int node){ return get(node, AVAILABLE); }
+
+  /** Adds to a node's counts, returning the count before: */
+  public int addVisits(int node, int n){ return add(node, VISITS, n); }
+  public int addWins(int node, int n){ return add(node, WINS, n); }
+  public int addAvailable(int node, int n){ return add(node, AVAILABLE, n); }
+
+  /** Returns the index of the node's child for the action, or -1 if it has no children: */
+  public int child(int node, int action){
+    int children = (int) INTS.getAcquire(records, offset(node, CHILDREN));
+    return children == 0 ? -1 : children + action;
+  }
+
+  /**
+   * Gives the node a block of children, one for each of width actions, if it hasn't got one.
+   * Returns false if the arena is full.
+   */
+  public boolean expand(int node, int width){
+    if ((int) INTS.getAcquire(records, offset(node, CHILDREN)) != 0) return true;
+    int block = top.getAndAdd(width);
+    if (block > capacity - width){
+      top.getAndAdd(-width);
+      return false;
+    }
+    clear(block, width);
+    // If another thread expanded the node first, its block is used (and this one is wasted until the reset):
+    INTS.compareAndSet(records, offset(node, CHILDREN), 0, block);
+    return true;
+  }
+
+  private static int offset(int node, int field){ return (node * RECORD_INTS + field) * 4; }
+  private int get(int node, int field){ return (int) INTS.getOpaque(records, offset(node, field)); }
+  private int add(int node, int field, int n){ return (int) INTS.getAndAdd(records, offset(node, field), n); }
+
+  private void clear(int from, int count){
+    for (int i = offset(from, 0); i < offset(from + count, 0); i += 8) records.putLong(i, 0);
+  }
+}
@@ -4,24 +4,31 @@ import java.awt.Graphics;
 /**
  * NormalSquare is a subclass of Square representing the majority of squares on the board.
  * GameCharacters can be placed on them.
+ * Which GameCharacter is on the square is stored in the game's GridModel, which this is a view of.
  */
 public class NormalSquare extends Square {
 
-  /** The GameCharacter currently on this square. */
-  private GameCharacter character;
+  /** The model storing this square's occupant, and the square's cell index within it. */
+  private final GridModel model;
+  private final int cell;
 
-  public NormalSquare(int row, int col){ super(row, col); }
+  public NormalSquare(GridModel model, int row, int col){
+    super(row, col);
+    this.model = model;
+    this.cell = model.layout.index(row, col);
+  }
 
   @Override
-  public void setCharacter(GameCharacter c){ this.character = c; }
+  public void setCharacter(GameCharacter c){ model.occupy(cell, c); }
   @Override
-  public void removeCharacter(){ this.character = null; }
+  public void removeCharacter(){ model.vacate(cell); }
 
   @Override
-  public boolean isBlocked(){ return character != null; }
+  public boolean isBlocked(){ return model.isOccupied(cell); }
 
   @Override
   public String toString(){
+    GameCharacter character = model.getCharacter(cell);
     return character == null ? " " : character.toString().substring(0, 1);
   }
   
@@ -10,14 +10,16 @@ import java.util.*;
  */
 public class Player {
 
-  /** The Player's number (from 1 to 4). */
+  /** The Player's number (from 1 to the number of players). */
   public final int number;
   /** The Player's GameCharacter that they control. */
   public final GameCharacter character;
   /** The Player's private collection of Cards dealt to them. */
-  protected final Set<Card> hand = new HashSet<>();
+  protected CardSet hand = CardSet.EMPTY;
   /** True once the Player has made a solve attempt to signify they're eliminated. */
   private boolean solveAttempted;
+  /** What the Player has seen of where the Cards are (created once the Cards are dealt), used for hints and by Computers: */
+  protected Deduction deduction;
 
   /** Constructs a new Player with a specified number and character to control: */
   public Player(int number, GameCharacter c){
@@ -25,24 +27,40 @@ public class Player {
     this.character = c;
   }
 
-  public void addToHand(Card c){ hand.add(c); }
+  /** Gives the Player the Cards dealt to them: */
+  public void setHand(CardSet hand){ this.hand = hand; }
+  public CardSet getHand(){ return hand; }
   /** Sets the solveAttempted flag once a Player has made a solve attempt. */
   public boolean solveAttempted(){ return solveAttempted; }
 
+  /**
+   * Returns the Player's Deduction, starting it from their hand (and the size of everyone's) if it hasn't been yet:
+   */
+  public Deduction getDeduction(Board board){
+    if (deduction == null){
+      Player[] players = board.getPlayers();
+      int[] handSizes = new int[players.length];
+      for (int i = 0; i < players.length; i++) handSizes[i] = players[i].getHand().size();
+      deduction = new Deduction(board.getRegistry(), character.index, hand, handSizes);
+    }
+    return deduction;
+  }
+
   /**
    * Starts and manages a Player's turn:
    * (Works similar to a state machine).
    */
-  public void startTurn(Scanner input, Player[] players, int currentPlayerIndex,
-                        Map<String, Card> allCards, Set<Card> solution, Square[][] grid){
+  public void startTurn(Board board){
+    Scanner input = board.getInput();
     System.out.println("Player "+number+"'s turn ("+character+"):");
     System.out.println("Please enter \"start\" when you are ready.");
-    Board.requireInput("start");
+    board.requireInput("start");
 
     // Add all possible starting commands:
     Map<String, String> commands = new HashMap<>(); // holds commands and descriptions
 
     commands.put("check", "check the cards in your hand."); // basic ones
+    commands.put("hint", "get a hint from what you've seen.");
     commands.put("end", "end turn.");
     if (!solveAttempted) commands.put("solve", "attempt solving the case!");
 
@@ -59,12 +77,10 @@ public class Player {
     String message = "Welcome, Player " + number + "! (" + character + ")";
 
     while (true) {
-      Board.displayBoard();
-      
-      //--------------------------------------------------------------------------------------------------------------------
-      Board.gui.repaint(); //should be in game class
-      //--------------------------------------------------------------------------------------------------------------------
-      
+      highlightMoves(board, movesLeft);
+      board.displayBoard();
+      board.repaint();
+
       System.out.println(message);
       System.out.println("Available actions:");
       for (String command : commands.keySet())
@@ -78,7 +94,7 @@ public class Player {
 
           // If it's a move:
           if (command.length() == 1){
-            if (move(command, grid)){
+            if (move(command, board)){
               if (character.inEstate()) { // if just entered estate during move
                 movesLeft = 0;
                 Estate e = character.getEstate();
@@ -106,29 +122,34 @@ public class Player {
           // If command is not a move:
           switch (command){
             case "check":
-              checkHand();
+              checkHand(board);
+              break;
+            case "hint":
+              System.out.println(hint(board));
+              System.out.println("Enter \"done\" when finished looking...");
+              board.requireInput("done");
               break;
             case "roll":
               commands.remove("roll");
-              movesLeft = rollDice();
-              message = "You ("+character+") rolled: "+movesLeft;
+              movesLeft = board.getDice().roll();
+              message = "You ("+character+") rolled: "+movesLeft+". "+describeNearestEstate(board);
               commands.put("w", "move up.");
               commands.put("a", "move left.");
               commands.put("s", "move down.");
               commands.put("d", "move right.");
               break;
             case "leave":
-              if (leaveEstate(input)) {
+              if (leaveEstate(board)) {
                 commands.remove("leave");
                 commands.remove("guess");
                 commands.put("roll", "roll the dice.");
               }
               break;
             case "guess":
-              guess(input, players, currentPlayerIndex, allCards);
+              guess(board);
               return;
             case "solve":
-              attemptSolve(input, allCards, solution);
+              attemptSolve(board);
               return;
             case "end":
               return;
@@ -144,26 +165,44 @@ public class Player {
   /**
    * Displays the Cards in the Player's hand:
    */
-  private void checkHand(){
+  private void checkHand(Board board){
     String out = "Your cards: ";
     for (Card c : hand) out += c+", ";
     System.out.println(out+"\nEnter \"done\" when finished looking...");
-    Board.requireInput("done");
+    board.requireInput("done");
   }
 
   /**
-   * Returns a random number from 2 to 12 (inclusive):
+   * Highlights every square the Player could reach with the moves they have left:
    */
-  private static int rollDice(){
-    //return (int)(Math.random() * 11) + 2;
-	  return 12;
+  private void highlightMoves(Board board, int movesLeft){
+    Square current = character.getSquare();
+    if (movesLeft == 0 || current == null){
+      board.setHighlights(new int[0]);
+      return;
+    }
+    Reachability r = board.getReachability();
+    r.fromCell(board.getModel().layout.index(current.row, current.col), movesLeft);
+    board.setHighlights(r.copyCells());
+  }
+
+  /**
+   * Describes the closest Estate to the Player and how many steps away it is:
+   */
+  private String describeNearestEstate(Board board){
+    Square current = character.getSquare();
+    GridModel model = board.getModel();
+    int cell = model.layout.index(current.row, current.col);
+    int id = model.layout.distances().nearestEstate(cell);
+    if (id == -1) return "No estates can be reached.";
+    return "Closest estate: "+model.getEstate(id)+" ("+model.layout.distances().nearestSteps(cell)+" steps).";
   }
 
   /**
    * Attempts to move the current Player in the specified key direction.
    * Returns true if successful.
    */
-  private boolean move(String directionKey, Square[][] grid){
+  private boolean move(String directionKey, Board board){
     Square current = character.getSquare();
     int row = current.row;
     int col = current.col;
@@ -183,14 +222,26 @@ public class Player {
       default:
         throw new IllegalArgumentException("Invalid direction key: "+directionKey);
     }
-    if (row < 0 || row >= Board.ROWS || col < 0 || col >= Board.COLS) return false;
-    Square next = grid[row][col];
-    if (next.isBlocked()) return false;
+    return moveTo(board, row, col);
+  }
+
+  /**
+   * Moves the Player's GameCharacter one step, onto the square at the specified row and column
+   * (entering its Estate if it's an entrance). Returns true if successful.
+   */
+  protected boolean moveTo(Board board, int row, int col){
+    Square current = character.getSquare();
+    GridModel model = board.getModel();
+    if (row < 0 || row >= model.layout.rows || col < 0 || col >= model.layout.cols) return false;
+    if (model.isBlocked(model.layout.index(row, col))) return false;
+    Square next = board.getGrid()[row][col];
 
     // Finally move character to next square:
+    board.toggleHash(character);
     character.moveToSquare(next);
     current.removeCharacter();
     next.setCharacter(character);
+    board.toggleHash(character);
     return true;
   }
 
@@ -198,25 +249,25 @@ public class Player {
    * Lets the Player leave the Estate by choosing which exit to use.
    * Returns false if all exits are blocked:
    */
-  private boolean leaveEstate(Scanner input){
+  private boolean leaveEstate(Board board){
+    Scanner input = board.getInput();
     assert(character.inEstate());
     Estate e = character.getEstate();
 
-    // Only add exits that aren't blocked:
-    Map<String, EstateSquare> exits = new HashMap<>();
-    for (EstateSquare s : e.getEntrances()){
-      if (!s.isExitBlocked()){
-        exits.put(s.getSide().toString().toLowerCase(), s);
-      }
-    }
-
     // If all exits are blocked, just return false:
-    if (exits.isEmpty()){
+    if (!e.hasOpenExit()){
       System.out.println("All exits are blocked!");
-      Board.wait(2000);
+      board.pause(2000);
       return false;
     }
 
+    // Only add exits that aren't blocked (the set bits of the Estate's exit mask):
+    Map<String, EstateSquare> exits = new HashMap<>();
+    for (int mask = e.getExitMask(); mask != 0; mask &= mask - 1){
+      EstateSquare s = e.getEntrance(Integer.numberOfTrailingZeros(mask));
+      exits.put(s.getSide().toString().toLowerCase(), s);
+    }
+
     // Print out all possible exits:
     System.out.println("Which exit would you like to use?");
     String out = "Enter a side: ";
@@ -226,22 +277,32 @@ public class Player {
     System.out.println(out);
 
     // Wait for Player to choose an exit:
-    NormalSquare outside = null;
+    EstateSquare exit = null;
     while (input.hasNext()){
       String in = input.nextLine().toLowerCase();
       if (exits.containsKey(in)){
-        outside = exits.get(in).getOuterSquare();
+        exit = exits.get(in);
         break;
       }
       System.out.println("Unrecognized input. Please try again:");
     }
 
     // Move Player outside:
-    assert(outside != null);
-    e.removeContents(character);
+    assert(exit != null);
+    exitVia(board, exit);
+    return true;
+  }
+
+  /**
+   * Moves the Player's GameCharacter out of its Estate through the specified entrance, whose exit must be open:
+   */
+  protected void exitVia(Board board, EstateSquare exit){
+    NormalSquare outside = exit.getOuterSquare();
+    board.toggleHash(character);
+    character.getEstate().removeContents(character);
     outside.setCharacter(character);
     character.moveToSquare(outside);
-    return true;
+    board.toggleHash(character);
   }
 
 
@@ -250,87 +311,161 @@ public class Player {
    * A guess involves 3 cards; a GameCharacter, Estate, and Weapon.
    * Following Players must refute the guess if they can.
    */
-  private void guess(Scanner input, Player[] players, int currentPlayerIndex, Map<String, Card> allCards){
+  private void guess(Board board){
     assert(character.inEstate());
+    Scanner input = board.getInput();
+    CardRegistry registry = board.getRegistry();
     Estate e = character.getEstate();
     System.out.println();
 
-    // Set up collections for this guess:
-    Set<Card> guess = new HashSet<>(Collections.singletonList(e));
-    Map<String, GameCharacter> characterMap = new HashMap<>();
-    Map<String, Weapon> weaponMap = new HashMap<>();
-    for (Card c : allCards.values()){
-      if (c instanceof GameCharacter) characterMap.put(c.name.toLowerCase(), (GameCharacter) c);
-      else if (c instanceof Weapon) weaponMap.put(c.name.toLowerCase(), (Weapon) c);
-    }
+    CardSet guess = board.getDeck().none().with(e);
 
-    // Let Player pick a GameCharacter:
+    // Let Player pick a GameCharacter (names can be abbreviated):
     System.out.println("Enter a Character name for your guess:");
     while (input.hasNext()){
-      String in = input.nextLine().toLowerCase();
-      if (characterMap.containsKey(in)){
-        GameCharacter c = characterMap.get(in);
-        guess.add(c);
+      String in = input.nextLine();
+      GameCharacter c = registry.findCharacter(in);
+      if (c != null){
+        guess = guess.with(c);
 
         // Move GameCharacter to Estate:
-        moveToEstate(c, c.getSquare(), e);
-        c.setSquare(null);
+        moveToEstate(board, c, e);
         break;
       }
-      System.out.println("Invalid name. Please try again:");
+      printInvalidName(registry, CardRegistry.Category.CHARACTER, in);
     }
 
     // Now pick a Weapon:
     System.out.println("Now enter a Weapon name for your guess:");
     while (input.hasNext()){
-      String in = input.nextLine().toLowerCase();
-      if (weaponMap.containsKey(in)){
-        Weapon w = weaponMap.get(in);
-        guess.add(w);
+      String in = input.nextLine();
+      Weapon w = registry.findWeapon(in);
+      if (w != null){
+        guess = guess.with(w);
 
         // Move Weapon to Estate:
-        moveToEstate(w, null, e);
+        moveToEstate(board, w, e);
         break;
       }
-      System.out.println("Invalid name. Please try again:");
+      printInvalidName(registry, CardRegistry.Category.WEAPON, in);
     }
     
-    //==============================================================================================
-    Board.gui.repaint(); 
-    //==============================================================================================
-    Board.wait(1000);
+    board.repaint();
+    board.pause(1000);
 
     // Output guess:
     String out = "Your guess: ";
     for (Card c : guess) out += c+", ";
     System.out.println(out+"\n");
 
-    Board.wait(1000);
+    board.pause(1000);
 
-    // Cycle through other players:
-    for (int delta = 1; delta < 4; delta++){
-      int i = (currentPlayerIndex + delta) % 4;
-      Player p = players[i];
-      // If a refute was made:
-      if(p.refute(input, guess, this)){
-        System.out.println("Please enter \"done\" when finished looking:");
-        Board.requireInput("done");
-        return;
-      }
-      Board.wait(1000);
+    // If a refute was made:
+    if (askToRefute(board, guess) != null){
+      System.out.println("Please enter \"done\" when finished looking:");
+      board.requireInput("done");
+      return;
     }
 
     // If cards were not found:
     System.out.println("\nNo other players have those cards!");
     System.out.println("Please enter \"end\" to end turn:");
-    Board.requireInput("end");
+    board.requireInput("end");
+  }
+
+  /**
+   * Makes a guess of a GameCharacter and Weapon in the Estate the Player is in, moving them there,
+   * then has the following Players refute it. Returns the Card revealed, or null if no one could.
+   */
+  protected Card suggest(Board board, GameCharacter c, Weapon w){
+    Estate e = character.getEstate();
+    moveToEstate(board, c, e);
+    moveToEstate(board, w, e);
+    board.repaint();
+    return askToRefute(board, board.getDeck().none().with(c).with(e).with(w));
+  }
+
+  /**
+   * Cycles through the other Players up to the first who can refute the guess (or all of them if nobody can),
+   * then tells every Player what happened. Returns the Card revealed, or null if no one could refute it.
+   */
+  protected Card askToRefute(Board board, CardSet guess){
+    Player[] players = board.getPlayers();
+    int currentPlayerIndex = board.getCurrentPlayerIndex();
+    int refuter = board.getHolders().firstRefuter(currentPlayerIndex, guess.bits);
+    Card shown = null;
+    for (int delta = 1; delta < players.length; delta++){
+      int i = (currentPlayerIndex + delta) % players.length;
+      Player p = players[i];
+      if (i == refuter){
+        shown = p.refute(board, guess, this);
+        break;
+      }
+      p.refute(board, guess, this); // just says they have no refutation cards
+      board.pause(1000);
+    }
+    board.announceGuess(currentPlayerIndex, guess, refuter, shown);
+    return shown;
+  }
+
+  /**
+   * Called on every Player after each guess, with the seats (indices into the Board's players) of the guesser
+   * and the refuter (-1 if no one could), and the Card revealed if this Player saw it (else null):
+   */
+  public void observeGuess(Board board, int guesser, CardSet guess, int refuter, Card shown){
+    Deduction d = getDeduction(board);
+    d.observeGuess(guesser, guess.bits, refuter, shown);
+    board.hashKnown(d.self, d.all() & ~d.candidates());
+  }
+
+  /**
+   * Called when another Player's turn starts (and ends), so a Computer can think ahead while it waits:
+   */
+  public void startPondering(Board board){}
+  public void stopPondering(){}
+
+  /** Called on every Player once the game is over (won, everyone eliminated, abandoned, or failed): */
+  public void gameFinished(Board board){}
+
+  /**
+   * Describes the Player's most likely solution, from what they've seen,
+   * and the guess the game's GuessAdvisor recommends if they're in an Estate:
+   */
+  public String hint(Board board){
+    Deduction d = getDeduction(board);
+    CardRegistry registry = board.getRegistry();
+    long seed = System.nanoTime(); // not the game's random source, so asking for hints doesn't change the game
+    HandSampler.Estimate estimate = new HandSampler().estimate(d, seed);
+    String out = "Most likely solution: ";
+    for (CardRegistry.Category category : CardRegistry.Category.values()){
+      Card best = null;
+      for (Card c : registry.all(category)){
+        if (best == null || estimate.inSolution(c) > estimate.inSolution(best)) best = c;
+      }
+      out += String.format("%s (%.0f%%), ", best, 100 * estimate.inSolution(best));
+    }
+    GuessAdvisor advisor = board.getAdvisor();
+    if (advisor == null || !character.inEstate() || solveAttempted) return out;
+    Estate e = character.getEstate();
+    GuessAdvisor.Advice advice = advisor.recommend(d, registry, e, seed);
+    return advice == null ? out : out+"\nSuggested guess in "+e+": "+advice;
+  }
+
+  /**
+   * Asks for a name again, listing the Cards it could be short for if there are several:
+   */
+  private static void printInvalidName(CardRegistry registry, CardRegistry.Category category, String in){
+    CardSet matches = registry.complete(category, in);
+    if (matches.size() > 1 && !in.trim().isEmpty()) System.out.println("Did you mean: "+matches+"? Please try again:");
+    else System.out.println("Invalid name. Please try again:");
   }
 
   /**
    * Moves a Card to the specified Estate.
    * Used when a guess is made.
    */
-  private void moveToEstate(Card c, Square s, Estate e){
+  private void moveToEstate(Board board, Card c, Estate e){
+    board.toggleHash(c);
     // If already in an Estate, only move it if it's in a different one:
     if (c.inEstate()){
       Estate current = c.getEstate();
@@ -340,59 +475,60 @@ public class Player {
         e.addContents(c);
       }
     }
-    // Else if not in an Estate, move it (only applies to GameCharacters):
+    // Else if not in an Estate, move it off its square (only applies to GameCharacters):
     else {
-      s.removeCharacter();
+      GameCharacter character = (GameCharacter) c;
+      character.getSquare().removeCharacter();
+      character.setSquare(null);
       c.setEstate(e);
       e.addContents(c);
     }
+    board.toggleHash(c);
   }
 
   /**
-   * Returns false if Player has no guess cards in their hand.
-   * Else, they must choose one to reveal and it returns true.
+   * Returns null if Player has no guess cards in their hand.
+   * Else, they must choose one to reveal and it is returned.
    */
-  protected boolean refute(Scanner input, Set<Card> guess, Player original){
-    // Add guessed Cards to options if they're in hand:
-    Map<String, Card> options = new HashMap<>();
-    for (Card c : guess){
-      if (hand.contains(c)) options.put(c.name.toLowerCase(), c);
-    }
-
+  protected Card refute(Board board, CardSet guess, Player original){
+    Scanner input = board.getInput();
     // If none of the cards were found:
-    if (options.isEmpty()){
+    if (!hand.intersects(guess)){
       System.out.println("Player "+number+" ("+character+") has no refutation cards.");
-      return false;
+      return null;
     }
 
+    // The guessed Cards in hand:
+    CardSet options = hand.and(guess);
+
     // If they do have options, let them choose:
     System.out.println("Player "+number+" ("+character+") has refutation card(s)!\n");
     System.out.println("Player "+number+", when ready to choose, please enter \"ready\":");
-    Board.requireInput("ready");
+    board.requireInput("ready");
 
     String out = "Enter the Card you wish to reveal: ";
-    for (Card c : options.values()) out += "\""+c.toString().toLowerCase()+"\", ";
+    for (Card c : options) out += "\""+c.toString().toLowerCase()+"\", ";
     System.out.println(out);
     Card c = null;
     while (input.hasNext()){
-      String in = input.nextLine().toLowerCase();
-      if (options.containsKey(in)){
-        c = options.get(in);
+      Card found = board.getRegistry().find(input.nextLine());
+      if (found != null && options.contains(found)){
+        c = found;
         break;
       }
       System.out.println("Invalid name. Please try again:");
     }
 
-    Board.wait(1000);
+    board.pause(1000);
     System.out.println("You have chosen "+c+".\n");
-    Board.wait(1000);
+    board.pause(1000);
 
     // Finally, let original Player see it:
-    Board.displayBoard();
+    board.displayBoard();
     System.out.println("Please hand the device back to Player "+original.number+" ("+original.character+").");
-    Board.wait(2000);
+    board.pause(2000);
     System.out.println("Player "+number+" revealed: "+c);
-    return true;
+    return c;
   }
 
 
@@ -401,8 +537,10 @@ public class Player {
    * If guess is correct, Player wins!
    * Else Player is eliminated and can no longer guess or make solve attempts.
    */
-  private void attemptSolve(Scanner input, Map<String, Card> allCards, Set<Card> solution){
-    solveAttempted = true;
+  private void attemptSolve(Board board){
+    Scanner input = board.getInput();
+    CardRegistry registry = board.getRegistry();
+    CardSet solution = board.getSolution();
     System.out.println("Please enter the 3 card names, separated by commas:");
     while (input.hasNext()){
       String in = input.nextLine();
@@ -415,11 +553,11 @@ public class Player {
       }
 
       // Check if names are valid card names:
-      Set<String> invalidNames = new HashSet<>();
+      Card[] cards = new Card[names.length];
+      Set<String> invalidNames = new LinkedHashSet<>();
       for (int i = 0; i < names.length; i++){
-        String name = names[i].trim();
-        names[i] = name.toLowerCase();
-        if (!allCards.containsKey(names[i])) invalidNames.add(name);
+        cards[i] = registry.find(names[i]);
+        if (cards[i] == null) invalidNames.add(names[i].trim());
       }
 
       // If there are invalid names:
@@ -431,42 +569,38 @@ public class Player {
       }
 
       // Check for duplicates:
-      Set<String> uniqueNames = new HashSet<>(Arrays.asList(names));
-      if (uniqueNames.size() != 3){
+      CardSet prediction = board.getDeck().none().with(cards[0]).with(cards[1]).with(cards[2]);
+      if (prediction.size() != 3){
         System.out.println("Duplicate names entered. Please try again:");
         continue;
       }
 
       // Check if prediction matches solution:
       String predictionOut = "\nYou entered: ";
-      boolean failed = false;
-      for (String name : names){
-        Card c = allCards.get(name.toLowerCase());
-        predictionOut += c.toString() + ", ";
-        if (!solution.contains(c)) failed = true;
-      }
+      for (Card c : cards) predictionOut += c.toString() + ", ";
       System.out.println(predictionOut);
+      boolean failed = !accuse(board, prediction);
 
       String solutionOut = "The solution: ";
       for (Card c : solution) solutionOut += c.toString() + ", ";
       System.out.println(solutionOut+"\n");
 
-      Board.wait(2000);
+      board.pause(2000);
 
       // Determine output based on whether they solved it or failed:
       if (failed){
         System.out.println("Your prediction was wrong. You have been eliminated.");
-        Board.wait(2000);
-        if (Board.allPlayersEliminated()) Board.endGame(false);
+        board.pause(2000);
+        if (board.allPlayersEliminated()) board.endGame(false);
         else {
           System.out.println("Please enter \"end\" to end turn:");
-          Board.requireInput("end");
+          board.requireInput("end");
         }
       }
       else {
         System.out.println("Your prediction was right! You win.");
-        Board.wait(2000);
-        Board.endGame(true);
+        board.pause(2000);
+        board.endGame(true);
       }
       return;
     }
@@ -474,6 +608,17 @@ public class Player {
   }
 
 
+  /**
+   * Checks a prediction of the solution, after which the Player can't guess or solve again.
+   * Returns true if the prediction was right.
+   */
+  protected boolean accuse(Board board, CardSet prediction){
+    if (!solveAttempted) board.hashEliminated(character.index);
+    solveAttempted = true;
+    return prediction.equals(board.getSolution());
+  }
+
+
   @Override
   public String toString(){
     String out = "Player "+number+" ("+character+"):\nCards: ";
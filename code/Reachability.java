@@ -0,0 +1,158 @@
+import java.util.Arrays;
+
+/**
+ * Reachability answers "where can a GameCharacter get to with a roll of N?".
+ * Given a starting cell (or an Estate being left) and a step budget from a dice roll, it finds
+ * every reachable unoccupied square and every Estate that can be entered through its entrances,
+ * along with the fewest steps needed and a path to each.
+ *
+ * It uses a breadth-first search over a GridModel that reuses its buffers between queries,
+ * so a query allocates nothing. Each instance should only be used by one thread at a time.
+ */
+public final class Reachability {
+
+  private final GridModel model;
+  private final MapLayout layout;
+
+  /** Search buffers, indexed by cell. A cell has been visited in this query if its stamp matches stamp. */
+  private final int[] queue;
+  private final int[] stamps;
+  private final short[] steps;
+  private final int[] parents;
+  private int stamp;
+
+  /** Results of the last query: */
+  private final int[] cells;
+  private int count;
+  private long estates; // bitmask of reachable estate ids
+  private final short[] estateSteps;
+  private final int[] estateEntrances;
+
+  /** Constructs a Reachability engine for the specified model: */
+  public Reachability(GridModel model){
+    this.model = model;
+    this.layout = model.layout;
+    int size = layout.size();
+    this.queue = new int[size];
+    this.stamps = new int[size];
+    this.steps = new short[size];
+    this.parents = new int[size];
+    this.cells = new int[size];
+    this.estateSteps = new short[layout.estateCount()];
+    this.estateEntrances = new int[layout.estateCount()];
+  }
+
+  /**
+   * Finds everything reachable from the start cell within the budget of steps.
+   * The start cell itself is not included in the results.
+   */
+  public void fromCell(int start, int budget){
+    reset();
+    stamps[start] = stamp;
+    steps[start] = 0;
+    parents[start] = -1;
+    queue[0] = start;
+    search(1, budget);
+  }
+
+  /**
+   * Finds everything reachable within the budget of steps after leaving the Estate with the specified id.
+   * Leaving is free, so the square outside each unblocked exit is reachable in 0 steps.
+   */
+  public void fromEstate(int estateId, int budget){
+    reset();
+    int tail = 0;
+    for (int mask = model.getEstate(estateId).getExitMask(); mask != 0; mask &= mask - 1){
+      int outer = layout.outerCell(layout.entranceCell(estateId, Integer.numberOfTrailingZeros(mask)));
+      if (stamps[outer] == stamp) continue; // two exits onto the same square
+      stamps[outer] = stamp;
+      steps[outer] = 0;
+      parents[outer] = -1;
+      queue[tail++] = outer;
+      cells[count++] = outer;
+    }
+    search(tail, budget);
+  }
+
+  private void reset(){
+    count = 0;
+    estates = 0;
+    if (++stamp == 0){ // stamps wrapped around, so clear them all
+      Arrays.fill(stamps, 0);
+      stamp = 1;
+    }
+  }
+
+  /**
+   * Breadth-first search from the queued cells:
+   */
+  private void search(int tail, int budget){
+    int cols = layout.cols;
+    int head = 0;
+    while (head < tail){
+      int cell = queue[head++];
+      int next = steps[cell] + 1;
+      if (next > budget) continue;
+      int col = cell % cols;
+      if (col > 0) tail = visit(cell - 1, cell, next, tail);
+      if (col + 1 < cols) tail = visit(cell + 1, cell, next, tail);
+      if (cell >= cols) tail = visit(cell - cols, cell, next, tail);
+      if (cell + cols < cells.length) tail = visit(cell + cols, cell, next, tail);
+    }
+  }
+
+  /**
+   * Visits a neighbouring cell, recording it if it's reachable, and returns the new queue tail:
+   * (Moving onto an entrance enters its Estate, which ends movement).
+   */
+  private int visit(int cell, int from, int s, int tail){
+    if (stamps[cell] == stamp) return tail;
+    stamps[cell] = stamp;
+    steps[cell] = (short) s;
+    parents[cell] = from;
+
+    if (layout.isEntrance(cell)){
+      int id = layout.estateId(cell);
+      if ((estates & (1L << id)) == 0){
+        estates |= 1L << id;
+        estateSteps[id] = (short) s;
+        estateEntrances[id] = cell;
+      }
+      return tail;
+    }
+    if (model.isBlocked(cell)) return tail;
+    cells[count++] = cell;
+    queue[tail] = cell;
+    return tail + 1;
+  }
+
+  /** Results of the last query: */
+  public int count(){ return count; }
+  /** Returns the i-th reachable square's cell (in order of increasing steps). */
+  public int cell(int i){ return cells[i]; }
+  /** Returns a copy of every reachable square's cell. */
+  public int[] copyCells(){ return Arrays.copyOf(cells, count); }
+  /** Returns true if the cell is a square reached in the last query: */
+  public boolean isReachable(int cell){
+    return stamps[cell] == stamp && !layout.isEntrance(cell) && !model.isBlocked(cell);
+  }
+  /** Returns the fewest steps to a square reached in the last query. */
+  public int steps(int cell){ return steps[cell]; }
+
+  /** Returns a bitmask of the ids of the Estates that can be entered. */
+  public long reachableEstates(){ return estates; }
+  public boolean canEnter(int estateId){ return (estates & (1L << estateId)) != 0; }
+  /** Returns the fewest steps to enter a reachable Estate, and the entrance to use. */
+  public int estateSteps(int estateId){ return estateSteps[estateId]; }
+  public int estateEntrance(int estateId){ return estateEntrances[estateId]; }
+
+  /**
+   * Writes the path to a reached cell (or entrance) into out, from the first step to the target,
+   * and returns its length:
+   */
+  public int path(int target, int[] out){
+    int length = steps[target];
+    for (int cell = target, i = length - 1; i >= 0; cell = parents[cell], i--) out[i] = cell;
+    return length;
+  }
+}
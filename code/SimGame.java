@@ -0,0 +1,423 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * SimGame is a compact, copyable model of a game of Murder Madness for AI search to play out, many times a second.
+ * It holds where each seat's GameCharacter is, every hand and the solution (one deal of the hidden Cards),
+ * and a simple model of what each seat has seen: the Cards it knows aren't in the solution.
+ *
+ * Turns are played as macro actions: moving towards an Estate (rolling, leaving the current Estate by its
+ * closest exit and following its distance field, ignoring other characters), guessing, accusing or ending the turn.
+ * Seats not being searched for play a simple policy: accuse once only one Card of each category is unseen,
+ * else guess in an unseen Estate, else head for the closest one.
+ *
+ * Seats are indices into the Board's players, and so also the GameCharacters' indices (and their card ids).
+ */
+public final class SimGame {
+
+  /** The most turns a playout lasts before being abandoned without a winner: */
+  public static final int MAX_TURNS = 200;
+
+  /** Kinds of action, encoded as ints by action(): */
+  public static final int END = 0;
+  public static final int ACCUSE = 1;
+  private static final int MOVE = 2;
+
+  private final Rules rules;
+
+  /** Where each seat's GameCharacter is: on a cell (estate being -1), or in an estate (cell being -1): */
+  private final int[] cells;
+  private final int[] estates;
+  /** Each seat's hand, and the Cards each seat has seen aren't in the solution: */
+  private final long[] hands;
+  private final long[] seen;
+  private long solution;
+  /** Bitmask of eliminated seats: */
+  private int eliminated;
+  private int current;
+  /** True once the current seat has moved this turn, so it can only guess or end its turn: */
+  private boolean moved;
+  private int winner = -1;
+  private boolean over;
+  private int turns;
+
+  /**
+   * The parts of a game that don't change: the map and the Cards:
+   */
+  private static final class Rules {
+    final MapLayout layout;
+    final DistanceFields distances;
+    final int seats;
+    final long[] categories;
+    final long all;
+    /** Card id of each map estate id, and map estate id of each card id (-1 if not an Estate): */
+    final int[] estateCards;
+    final int[] estateIds;
+    final int characterCount, weaponCount;
+    final int firstWeapon;
+
+    Rules(MapLayout layout, CardRegistry registry, int seats, int[] estateCards){
+      this.layout = layout;
+      this.distances = layout.distances();
+      this.seats = seats;
+      CardRegistry.Category[] values = CardRegistry.Category.values();
+      this.categories = new long[values.length];
+      for (int i = 0; i < values.length; i++) categories[i] = registry.all(values[i]).bits;
+      this.all = registry.all().bits;
+      this.estateCards = estateCards;
+      this.estateIds = new int[registry.size()];
+      Arrays.fill(estateIds, -1);
+      for (int id = 0; id < estateCards.length; id++) estateIds[estateCards[id]] = id;
+      this.characterCount = Long.bitCount(categories[0]);
+      this.weaponCount = Long.bitCount(categories[2]);
+      this.firstWeapon = Long.numberOfTrailingZeros(categories[2]);
+    }
+  }
+
+  private SimGame(Rules rules){
+    this.rules = rules;
+    int n = rules.seats;
+    cells = new int[n];
+    estates = new int[n];
+    hands = new long[n];
+    seen = new long[n];
+  }
+
+  /**
+   * Makes a model of the Board as it is now, with the view of the Cards of the seat whose Deduction it is
+   * (the current seat having moved this turn if moved).
+   * (The hands of the other seats and the solution are unknown, so must be filled in with deal() before playing).
+   */
+  public static SimGame of(Board board, Deduction d, boolean moved){
+    GridModel model = board.getModel();
+    Player[] players = board.getPlayers();
+    int[] estateCards = new int[model.layout.estateCount()];
+    for (int id = 0; id < estateCards.length; id++) estateCards[id] = model.getEstate(id).id;
+    SimGame game = new SimGame(new Rules(model.layout, board.getRegistry(), players.length, estateCards));
+    for (int s = 0; s < players.length; s++){
+      GameCharacter c = players[s].character;
+      if (c.inEstate()){
+        game.cells[s] = -1;
+        game.estates[s] = model.estateId(c.getEstate());
+      }
+      else {
+        game.cells[s] = model.layout.index(c.getSquare().row, c.getSquare().col);
+        game.estates[s] = -1;
+      }
+      if (players[s].solveAttempted()) game.eliminated |= 1 << s;
+    }
+    game.current = board.getCurrentPlayerIndex();
+    game.moved = moved;
+    game.seen[d.self] = game.rules.all & ~d.candidates();
+    return game;
+  }
+
+  /** Returns a copy of this game, to be played out: */
+  public SimGame copy(){
+    SimGame g = new SimGame(rules);
+    copyInto(g);
+    return g;
+  }
+
+  /** Copies this game's state into another model of the same game (to reuse it instead of allocating): */
+  public void copyInto(SimGame g){
+    System.arraycopy(cells, 0, g.cells, 0, cells.length);
+    System.arraycopy(estates, 0, g.estates, 0, estates.length);
+    System.arraycopy(hands, 0, g.hands, 0, hands.length);
+    System.arraycopy(seen, 0, g.seen, 0, seen.length);
+    g.solution = solution;
+    g.eliminated = eliminated;
+    g.current = current;
+    g.moved = moved;
+    g.winner = winner;
+    g.over = over;
+    g.turns = turns;
+  }
+
+  /**
+   * Fills in the hidden Cards from the i-th sampled deal. Seats other than the searching one
+   * are assumed to have only seen their own hands.
+   */
+  public void deal(HandSampler.Deals deals, int i, int self){
+    for (int s = 0; s < rules.seats; s++){
+      hands[s] = deals.hand(i, s);
+      if (s != self) seen[s] = hands[s];
+    }
+    solution = deals.solution(i);
+  }
+
+  public int current(){ return current; }
+  public boolean isOver(){ return over; }
+  public int winner(){ return winner; }
+  public boolean hasMoved(){ return moved; }
+  public boolean isEliminated(int seat){ return (eliminated & (1 << seat)) != 0; }
+  public int turns(){ return turns; }
+  public long seen(int seat){ return seen[seat]; }
+
+  /**
+   * Returns a hash of the game as the current seat sees it: where everyone is, what it has seen,
+   * whether it has moved and who is eliminated (so the same hash is reached by different orders of play):
+   */
+  public long hash(){
+    long h = mix(current + 1L);
+    for (int s = 0; s < rules.seats; s++) h = mix(h + ((cells[s] + 1L) << 8 | (estates[s] + 1)));
+    h = mix(h + seen[current]);
+    return mix(h + ((long) eliminated << 1 | (moved ? 1 : 0)));
+  }
+
+  /** Returns a hash of taking the action in the state with the hash: */
+  public static long hash(long state, int action){ return mix(state ^ (action + 1L) * 0x9E3779B97F4A7C15L); }
+
+  /** Scrambles the bits of a long (the finalizer of SplittableRandom): */
+  private static long mix(long z){
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Returns the number of distinct actions: end, accuse, move to each estate, and guess each character and weapon.
+   * Only the first TranspositionTable.MAX_ACTIONS of them can be stored as a state's best action:
+   */
+  public int actionCount(){ return MOVE + rules.estateCards.length + rules.characterCount * rules.weaponCount; }
+
+  /** Encodes actions: */
+  public int moveAction(int estateId){ return MOVE + estateId; }
+  public int guessAction(int character, int weapon){
+    return MOVE + rules.estateCards.length + character * rules.weaponCount + (weapon - rules.firstWeapon);
+  }
+  /** Decodes actions (the estate id moved to, or the card ids guessed, else -1): */
+  public int movedTo(int action){
+    int e = action - MOVE;
+    return e >= 0 && e < rules.estateCards.length ? e : -1;
+  }
+  public int guessedCharacter(int action){
+    int g = action - MOVE - rules.estateCards.length;
+    return g >= 0 ? g / rules.weaponCount : -1;
+  }
+  public int guessedWeapon(int action){
+    int g = action - MOVE - rules.estateCards.length;
+    return g >= 0 ? rules.firstWeapon + g % rules.weaponCount : -1;
+  }
+
+  /**
+   * Writes the actions the current seat can take into out, returning how many there are:
+   */
+  public int actions(int[] out){
+    int n = 0;
+    int s = current;
+    out[n++] = END;
+    if (isEliminated(s)) return n;
+    boolean inEstate = estates[s] != -1;
+    if (!moved){
+      out[n++] = ACCUSE;
+      for (int e = 0; e < rules.estateCards.length; e++){
+        if (e != estates[s]) out[n++] = MOVE + e;
+      }
+    }
+    if (inEstate){
+      int first = MOVE + rules.estateCards.length;
+      for (int g = 0; g < rules.characterCount * rules.weaponCount; g++) out[n++] = first + g;
+    }
+    return n;
+  }
+
+  /**
+   * Applies an action of the current seat, rolling with the random source. The turn passes on unless
+   * the seat moved into an Estate, in which case it can still guess there (or end its turn).
+   */
+  public void apply(int action, SplittableRandom random, double[] solutionOdds){
+    int s = current;
+    if (action == END){
+      endTurn();
+      return;
+    }
+    if (action == ACCUSE){
+      accuse(s, accusation(seen[s], solutionOdds));
+      endTurn();
+      return;
+    }
+    int target = movedTo(action);
+    if (target != -1){
+      moveTowards(s, target, random.nextInt(1, 7) + random.nextInt(1, 7));
+      moved = true;
+      if (estates[s] == -1) endTurn();
+      return;
+    }
+    guess(s, guessedCharacter(action), guessedWeapon(action), random);
+    endTurn();
+  }
+
+  /**
+   * Plays the current seat's turn with the simple policy:
+   */
+  public void playTurn(SplittableRandom random){
+    int s = current;
+    if (isEliminated(s)){
+      endTurn();
+      return;
+    }
+    long unseen = rules.all & ~seen[s];
+    if (oneOfEach(unseen)){
+      accuse(s, unseen);
+      endTurn();
+      return;
+    }
+    if (estates[s] == -1 || (unseen & (1L << rules.estateCards[estates[s]])) == 0){
+      int target = nearestUnseen(s);
+      if (target == -1){
+        endTurn();
+        return;
+      }
+      moveTowards(s, target, random.nextInt(1, 7) + random.nextInt(1, 7));
+      if (estates[s] == -1){
+        endTurn();
+        return;
+      }
+    }
+    guess(s, pick(unseen & rules.categories[0], random), pick(unseen & rules.categories[2], random), random);
+    endTurn();
+  }
+
+  /**
+   * Plays the game out with the simple policy until someone wins, everyone is eliminated, or it runs too long:
+   */
+  public void playOut(SplittableRandom random){
+    while (!over) playTurn(random);
+  }
+
+  /**
+   * Returns the Cards a seat would accuse: in each category the only unseen Card,
+   * or else the unseen one most likely to be in the solution (by card id) according to the odds:
+   */
+  public long accusation(long seen, double[] solutionOdds){
+    long accusation = 0;
+    for (long category : rules.categories){
+      long unseen = category & ~seen;
+      long best = unseen & -unseen;
+      for (long b = unseen; b != 0 && solutionOdds != null; b &= b - 1){
+        if (solutionOdds[Long.numberOfTrailingZeros(b)] > solutionOdds[Long.numberOfTrailingZeros(best)]) best = b & -b;
+      }
+      accusation |= best;
+    }
+    return accusation;
+  }
+
+  private boolean oneOfEach(long cards){
+    for (long category : rules.categories){
+      if (Long.bitCount(cards & category) != 1) return false;
+    }
+    return true;
+  }
+
+  private void accuse(int s, long accusation){
+    if (accusation == solution){
+      winner = s;
+      over = true;
+      return;
+    }
+    eliminated |= 1 << s;
+    if (Integer.bitCount(eliminated) == rules.seats) over = true;
+  }
+
+  /**
+   * Guesses a character and weapon in the seat's estate: the character is moved there, and the first seat after
+   * it holding any of the Cards shows it one at random. If no one can, the guessed Cards it doesn't hold are in the solution.
+   */
+  private void guess(int s, int character, int weapon, SplittableRandom random){
+    long guess = (1L << character) | (1L << weapon) | (1L << rules.estateCards[estates[s]]);
+    cells[character] = -1;
+    estates[character] = estates[s];
+    for (int k = 1; k < rules.seats; k++){
+      long cards = hands[(s + k) % rules.seats] & guess;
+      if (cards != 0){
+        seen[s] |= pickBit(cards, random);
+        return;
+      }
+    }
+    for (long b = guess & ~hands[s]; b != 0; b &= b - 1){
+      long card = b & -b;
+      for (long category : rules.categories){
+        if ((category & card) != 0) seen[s] |= category & ~card;
+      }
+    }
+  }
+
+  /**
+   * Moves the seat towards the estate with the roll, leaving its current estate by the exit closest to the target,
+   * and entering the target if it's within reach:
+   */
+  private void moveTowards(int s, int target, int roll){
+    short[] field = rules.distances.field(target);
+    MapLayout layout = rules.layout;
+    if (estates[s] != -1){
+      int best = -1;
+      for (int i = 0; i < layout.entranceCount(estates[s]); i++){
+        int outer = layout.outerCell(layout.entranceCell(estates[s], i));
+        if (outer != -1 && (best == -1 || field[outer] < field[best])) best = outer;
+      }
+      if (best == -1) return;
+      estates[s] = -1;
+      cells[s] = best;
+    }
+    int cell = cells[s];
+    if (field[cell] == DistanceFields.UNREACHABLE) return;
+    if (field[cell] <= roll){
+      cells[s] = -1;
+      estates[s] = target;
+      return;
+    }
+    // Walk downhill along the distance field:
+    int cols = layout.cols;
+    for (int step = 0; step < roll; step++){
+      int next = field[cell] - 1;
+      int col = cell % cols;
+      if (col > 0 && field[cell - 1] == next) cell = cell - 1;
+      else if (col + 1 < cols && field[cell + 1] == next) cell = cell + 1;
+      else if (cell >= cols && field[cell - cols] == next) cell = cell - cols;
+      else cell = cell + cols;
+    }
+    cells[s] = cell;
+  }
+
+  /** Returns the estate id of the closest estate the seat hasn't seen (other than the one it's in), or -1: */
+  private int nearestUnseen(int s){
+    int best = -1, bestSteps = DistanceFields.UNREACHABLE;
+    for (int e = 0; e < rules.estateCards.length; e++){
+      if (e == estates[s] || (seen[s] & (1L << rules.estateCards[e])) != 0) continue;
+      int steps = estates[s] == -1 ? rules.distances.steps(cells[s], e) : stepsBetween(estates[s], e);
+      if (steps < bestSteps){
+        best = e;
+        bestSteps = steps;
+      }
+    }
+    return best;
+  }
+
+  private int stepsBetween(int from, int to){
+    int best = DistanceFields.UNREACHABLE;
+    MapLayout layout = rules.layout;
+    for (int i = 0; i < layout.entranceCount(from); i++){
+      int outer = layout.outerCell(layout.entranceCell(from, i));
+      if (outer != -1) best = Math.min(best, rules.distances.steps(outer, to));
+    }
+    return best;
+  }
+
+  private void endTurn(){
+    moved = false;
+    current = (current + 1) % rules.seats;
+    if (++turns >= MAX_TURNS) over = true;
+  }
+
+  /** Returns the card id of a random Card in the set: */
+  private static int pick(long cards, SplittableRandom random){
+    return Long.numberOfTrailingZeros(pickBit(cards, random));
+  }
+
+  private static long pickBit(long cards, SplittableRandom random){
+    int n = random.nextInt(Long.bitCount(cards));
+    for (int i = 0; i < n; i++) cards &= cards - 1;
+    return cards & -cards;
+  }
+}
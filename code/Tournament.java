@@ -0,0 +1,305 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+
+/**
+ * Tournament is a command-line runner that plays many headless Computer-vs-Computer games of
+ * Murder Madness in parallel, with no GUI or user input.
+ * Every game gets its own seed, so any game in a tournament can be replayed exactly.
+ *
+ * Games are played on the standard map, on a map file, or each on its own generated map (seeded by the game).
+ *
+ * Usage: java Tournament [--games N] [--threads N] [--seed S] [--max-turns N] [--csv FILE] [--advisor SAMPLES] [--roll N] [SEAT] [DECK] [MAP]
+ *        java Tournament --replay SEED [--max-turns N] [--speed X] [--advisor SAMPLES] [--roll N] [SEAT] [DECK] [MAP]
+ * where SEAT is either --mcts ITERATIONS or --bot COMMAND [--bot-millis N],
+ * DECK is either --config FILE or --deck PLAYERS,ESTATES,WEAPONS (see GameConfig.generated),
+ * and MAP is either --map FILE or --generate ROWSxCOLS[:DENSITY].
+ * With --advisor, Computers choose their guesses with a GuessAdvisor sampling that many deals (with no time limit,
+ * so games can still be replayed), else they guess at random.
+ * With --roll, every roll is N (Dice.fixed), e.g. to check how much the dice decide games, else two six-sided dice are rolled.
+ * With --mcts, the first character is played by an MctsComputer searching that many iterations on one thread
+ * (again so games can be replayed), to compare it against the others.
+ * With --bot, it's instead played by an ExternalBot: each game starts its own process running the command
+ * (split on spaces), which has N milliseconds for each decision (so many bots run at once, one per thread).
+ */
+public class Tournament {
+
+  /** Default settings: */
+  public static final int DEFAULT_GAMES = 1000;
+  public static final int DEFAULT_MAX_TURNS = 400;
+  public static final String DEFAULT_CSV = "tournament.csv";
+  public static final double DEFAULT_WALL_DENSITY = 0.1;
+  /** The transposition table entries and tree nodes of each MctsComputer (fewer than the defaults, as games run in parallel): */
+  public static final int MCTS_TABLE_ENTRIES = 1 << 16;
+  public static final int MCTS_ARENA_NODES = 1 << 16;
+
+  /** The result of a single game. */
+  public static final class Result {
+    public final int game;
+    public final long seed;
+    /** The winning Player's number and character, or 0 and null if no one won. */
+    public final int winnerNumber;
+    public final String winnerCharacter;
+    public final int turns;
+    /** The Board's hash of the final position, the same for games that ended the same way (e.g. to find duplicates): */
+    public final long finalHash;
+    public final long nanos;
+
+    public Result(int game, long seed, Player winner, int turns, long finalHash, long nanos){
+      this.game = game;
+      this.seed = seed;
+      this.winnerNumber = winner == null ? 0 : winner.number;
+      this.winnerCharacter = winner == null ? null : winner.character.toString();
+      this.turns = turns;
+      this.finalHash = finalHash;
+      this.nanos = nanos;
+    }
+  }
+
+  private final int games;
+  private final int threads;
+  private final long seed;
+  private final int maxTurns;
+  /** The deck every game is played with: */
+  private GameConfig config = GameConfig.standard();
+  /** The map every game is played on (null for the standard map), or the size of map to generate for each game: */
+  private MapLayout layout;
+  private int generateRows, generateCols;
+  private double wallDensity;
+  /** Advises every game's Computers on their guesses, or null if they guess at random: */
+  private GuessAdvisor advisor;
+  /** Creates every game's Computers, or null for the Board's default: */
+  private BiFunction<Integer, GameCharacter, Player> computers;
+  /** The total every roll in every game is, or 0 to roll two six-sided dice: */
+  private int roll;
+
+  /** Constructs a Tournament of a number of games, spread across a number of threads: */
+  public Tournament(int games, int threads, long seed, int maxTurns){
+    this.games = games;
+    this.threads = threads;
+    this.seed = seed;
+    this.maxTurns = maxTurns;
+  }
+
+  /** Plays every game with the specified deck: */
+  public void setConfig(GameConfig config){ this.config = config; }
+
+  /** Has every game's Computers choose their guesses with the advisor (or at random if null): */
+  public void setAdvisor(GuessAdvisor advisor){ this.advisor = advisor; }
+  /** Has every game's Computers created by the function (or the Board's default if null): */
+  public void setComputers(BiFunction<Integer, GameCharacter, Player> computers){ this.computers = computers; }
+  /** Has every roll in every game be the total (or 0 to roll two six-sided dice, seeded by the game): */
+  public void setRoll(int roll){ this.roll = roll; }
+  /** Plays every game on the specified map: */
+  public void setLayout(MapLayout layout){ this.layout = layout; }
+
+  /** Plays each game on its own generated map of the specified size, with the deck's estates and characters: */
+  public void setGenerated(int rows, int cols, double wallDensity){
+    this.generateRows = rows;
+    this.generateCols = cols;
+    this.wallDensity = wallDensity;
+  }
+
+  /**
+   * Returns the map to play the game with the specified seed on:
+   * (A generated map is seeded by the game, so a replay of the game is played on the same map).
+   */
+  private MapLayout layoutFor(long gameSeed){
+    if (generateRows == 0) return layout;
+    MapGenerator generator = new MapGenerator(generateRows, generateCols, wallDensity, config.estateSymbols(),
+            config.characterSymbols());
+    return generator.generate(new SplittableRandom(~gameSeed));
+  }
+
+  /**
+   * Plays every game of the Tournament and returns their results in game order.
+   */
+  public List<Result> run() throws InterruptedException {
+    // Derive each game's seed up front, so results don't depend on thread scheduling:
+    SplittableRandom seeds = new SplittableRandom(seed);
+    List<Callable<Result>> tasks = new ArrayList<>();
+    for (int i = 0; i < games; i++){
+      int game = i;
+      long gameSeed = seeds.nextLong();
+      tasks.add(() -> play(game, gameSeed, maxTurns, config, layoutFor(gameSeed), advisor, computers, roll));
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Result> results = new ArrayList<>();
+      for (Future<Result> f : pool.invokeAll(tasks)){
+        try {
+          results.add(f.get());
+        } catch (ExecutionException e){
+          throw new IllegalStateException("Game failed", e.getCause());
+        }
+      }
+      return results;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Plays a single headless game with the specified seed and deck, on the specified map (or the standard map if null),
+   * with the Computers guessing with the advisor (or at random if null), created by the function (if not null),
+   * and every roll being the total (if not 0):
+   */
+  public static Result play(int game, long seed, int maxTurns, GameConfig config, MapLayout layout, GuessAdvisor advisor,
+                            BiFunction<Integer, GameCharacter, Player> computers, int roll){
+    long start = System.nanoTime();
+    Board board = new Board(seed, maxTurns);
+    board.setConfig(config);
+    if (layout != null) board.setLayout(layout);
+    board.setAdvisor(advisor);
+    if (computers != null) board.setComputers(computers);
+    if (roll > 0) board.setDice(Dice.fixed(roll));
+    board.initBoard();
+    return new Result(game, seed, board.getWinner(), board.getTurns(), board.getHash(), System.nanoTime() - start);
+  }
+
+  /**
+   * Prints a summary of the results: games per second, and win rates by seat and character.
+   */
+  public void printSummary(List<Result> results, long nanos){
+    Map<Integer, Integer> seatWins = new TreeMap<>();
+    Map<String, Integer> characterWins = new LinkedHashMap<>();
+    for (GameConfig.Entry c : config.characters) characterWins.put(c.name, 0);
+    int unfinished = 0;
+    long turns = 0;
+    for (Result r : results){
+      turns += r.turns;
+      if (r.winnerCharacter == null){
+        unfinished++;
+        continue;
+      }
+      seatWins.merge(r.winnerNumber, 1, Integer::sum);
+      characterWins.merge(r.winnerCharacter, 1, Integer::sum);
+    }
+
+    double seconds = nanos / 1e9;
+    System.out.println(Board.LINE);
+    System.out.printf("Played %d games in %.2fs (%.1f games/sec) on %d threads.%n",
+            results.size(), seconds, results.size() / seconds, threads);
+    System.out.printf("Average turns per game: %.1f%n", (double) turns / results.size());
+    System.out.println("Win rate by seat:");
+    for (int number = 1; number <= config.playerCount(); number++){
+      System.out.println(" - Player "+number+": "+rate(seatWins.getOrDefault(number, 0), results.size()));
+    }
+    System.out.println("Win rate by character:");
+    for (String name : characterWins.keySet()){
+      System.out.println(" - "+name+": "+rate(characterWins.get(name), results.size()));
+    }
+    System.out.println("No winner: "+rate(unfinished, results.size()));
+    System.out.println(Board.LINE);
+  }
+
+  private static String rate(int count, int total){
+    return String.format("%.1f%% (%d)", 100.0 * count / total, count);
+  }
+
+  /**
+   * Writes each game's result as a line of CSV:
+   */
+  public static void writeCsv(List<Result> results, String file) throws IOException {
+    try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(Paths.get(file)))){
+      w.println("game,seed,winner_player,winner_character,turns,final_hash,millis");
+      for (Result r : results){
+        w.printf("%d,%d,%d,%s,%d,%016x,%.3f%n", r.game, r.seed, r.winnerNumber,
+                r.winnerCharacter == null ? "" : r.winnerCharacter, r.turns, r.finalHash, r.nanos / 1e6);
+      }
+    }
+  }
+
+  public static void main(String... args) throws InterruptedException, IOException {
+    int games = DEFAULT_GAMES;
+    int threads = Runtime.getRuntime().availableProcessors();
+    long seed = new SplittableRandom().nextLong();
+    int maxTurns = DEFAULT_MAX_TURNS;
+    String csv = DEFAULT_CSV;
+    Long replay = null;
+    double speed = 0; // replays run instantly unless a speed is given
+    String map = null, generate = null, configFile = null, deck = null;
+    int advisorSamples = 0, mctsIterations = 0, roll = 0;
+    String bot = null;
+    long botMillis = ExternalBot.DEFAULT_BUDGET_MILLIS;
+
+    for (int i = 0; i < args.length; i++){
+      String value = i + 1 < args.length ? args[i + 1] : null;
+      switch (args[i]){
+        case "--games": games = Integer.parseInt(value); i++; break;
+        case "--threads": threads = Integer.parseInt(value); i++; break;
+        case "--seed": seed = Long.parseLong(value); i++; break;
+        case "--max-turns": maxTurns = Integer.parseInt(value); i++; break;
+        case "--csv": csv = value; i++; break;
+        case "--replay": replay = Long.parseLong(value); i++; break;
+        case "--speed": speed = Double.parseDouble(value); i++; break;
+        case "--map": map = value; i++; break;
+        case "--config": configFile = value; i++; break;
+        case "--deck": deck = value; i++; break;
+        case "--generate": generate = value; i++; break;
+        case "--advisor": advisorSamples = Integer.parseInt(value); i++; break;
+        case "--roll": roll = Integer.parseInt(value); i++; break;
+        case "--mcts": mctsIterations = Integer.parseInt(value); i++; break;
+        case "--bot": bot = value; i++; break;
+        case "--bot-millis": botMillis = Long.parseLong(value); i++; break;
+        default: throw new IllegalArgumentException("Unrecognized argument: "+args[i]);
+      }
+    }
+
+    Tournament t = new Tournament(games, threads, seed, maxTurns);
+    if (configFile != null) t.setConfig(GameConfig.load(Paths.get(configFile)));
+    if (deck != null){
+      String[] counts = deck.split(",");
+      t.setConfig(GameConfig.generated(Integer.parseInt(counts[0]), Integer.parseInt(counts[1]), Integer.parseInt(counts[2])));
+    }
+    if (map != null) t.setLayout(MapLoader.load(Paths.get(map)));
+    if (advisorSamples > 0) t.setAdvisor(new GuessAdvisor(new HandSampler(ForkJoinPool.commonPool(), advisorSamples),
+            ForkJoinPool.commonPool(), 0));
+    t.setRoll(roll);
+    if (mctsIterations > 0 && bot != null) throw new IllegalArgumentException("--mcts and --bot both play the first character");
+    if (bot != null){
+      List<String> command = Arrays.asList(bot.trim().split("\\s+"));
+      long millis = botMillis;
+      t.setComputers((number, c) -> c.index != 0 ? new Computer(number, c) : new ExternalBot(number, c, command, millis));
+    }
+    if (mctsIterations > 0){
+      int iterations = mctsIterations;
+      t.setComputers((number, c) -> c.index != 0 ? new Computer(number, c)
+              : new MctsComputer(number, c, new HandSampler(ForkJoinPool.commonPool(), HandSampler.DEFAULT_SAMPLES),
+                      new MctsSearch(ForkJoinPool.commonPool(), 1, iterations, 0, new TranspositionTable(MCTS_TABLE_ENTRIES),
+                              new NodeArena(MCTS_ARENA_NODES))));
+    }
+    if (generate != null){
+      String[] size = generate.split("[x:]");
+      double density = size.length > 2 ? Double.parseDouble(size[2]) : DEFAULT_WALL_DENSITY;
+      t.setGenerated(Integer.parseInt(size[0]), Integer.parseInt(size[1]), density);
+    }
+
+    // Replay a single game, printing everything that happens:
+    if (replay != null){
+      Board board = new Board(replay, maxTurns, System.out);
+      board.setConfig(t.config);
+      board.setAdvisor(t.advisor);
+      if (t.computers != null) board.setComputers(t.computers);
+      if (t.roll > 0) board.setDice(Dice.fixed(t.roll));
+      MapLayout layout = t.layoutFor(replay);
+      if (layout != null) board.setLayout(layout);
+      if (speed > 0) board.setClock(GameClock.scaled(1 / speed));
+      board.initBoard();
+      return;
+    }
+
+    System.out.println("Running "+games+" games with seed "+seed+"...");
+    long start = System.nanoTime();
+    List<Result> results = t.run();
+    long nanos = System.nanoTime() - start;
+    t.printSummary(results, nanos);
+    writeCsv(results, csv);
+    System.out.println("Results written to "+csv);
+  }
+}
@@ -0,0 +1,132 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * TranspositionTable holds search statistics by 64-bit state hash, so a search that reaches the same state
+ * by different orders of moves (or in a later search) shares what it learned there.
+ * Each entry is packed into a long: visits, wins, the best action and the age (the search it was last updated in).
+ *
+ * The table is a fixed-size array of buckets of entries, shared by every search thread without locks.
+ * An entry is two longs: its key XORed with its data, then its data. A writer claims an entry by a CAS of the
+ * first long, so a reader seeing the pair mid-update finds the key doesn't match and treats it as missing.
+ * When a bucket is full, the entry from the oldest search, or else with the fewest visits, is replaced,
+ * so memory stays the same however long the searches run.
+ */
+public final class TranspositionTable {
+
+  /** The data of a missing entry: */
+  public static final long MISSING = 0;
+  /** Entries per bucket, and how many times a contended update is retried before being dropped: */
+  private static final int BUCKET = 4;
+  private static final int RETRIES = 8;
+
+  /** The layout of an entry's data: */
+  private static final int VISIT_BITS = 20, WIN_BITS = 20, ACTION_BITS = 16, AGE_BITS = 8;
+  private static final int WIN_SHIFT = VISIT_BITS;
+  private static final int ACTION_SHIFT = WIN_SHIFT + WIN_BITS;
+  private static final int AGE_SHIFT = ACTION_SHIFT + ACTION_BITS;
+  private static final long VISIT_MASK = (1L << VISIT_BITS) - 1;
+  private static final long WIN_MASK = (1L << WIN_BITS) - 1;
+  private static final long ACTION_MASK = (1L << ACTION_BITS) - 1;
+  private static final long AGE_MASK = (1L << AGE_BITS) - 1;
+  /** The most actions an entry can name (one value meaning none): */
+  public static final int MAX_ACTIONS = (int) ACTION_MASK;
+
+  private final AtomicLongArray entries;
+  private final int bucketMask;
+  private volatile int age = 1;
+
+  /** Constructs a table of at least the specified number of entries (rounded up to a power of two): */
+  public TranspositionTable(int capacity){
+    int size = Integer.highestOneBit(Math.max(BUCKET, capacity) - 1) << 1;
+    this.entries = new AtomicLongArray(size * 2);
+    this.bucketMask = size / BUCKET - 1;
+  }
+
+  /** Returns the number of entries the table holds: */
+  public int capacity(){ return entries.length() / 2; }
+
+  /** Starts a new search, so entries from earlier ones are replaced first: */
+  public void newSearch(){ age = (int) (age % AGE_MASK) + 1; }
+
+  /** Decodes an entry's data: */
+  public static int visits(long data){ return (int) (data & VISIT_MASK); }
+  public static int wins(long data){ return (int) ((data >>> WIN_SHIFT) & WIN_MASK); }
+  /** Returns the best action, or -1 if none has been stored: */
+  public static int action(long data){
+    int a = (int) ((data >>> ACTION_SHIFT) & ACTION_MASK);
+    return a == MAX_ACTIONS ? -1 : a;
+  }
+  private static int age(long data){ return (int) ((data >>> AGE_SHIFT) & AGE_MASK); }
+
+  private long pack(long visits, long wins, int action){
+    // Halve both counts if either would overflow, keeping the mean:
+    while (visits > VISIT_MASK || wins > WIN_MASK){
+      visits >>>= 1;
+      wins >>>= 1;
+    }
+    return visits | wins << WIN_SHIFT | (long) (action < 0 ? MAX_ACTIONS : action) << ACTION_SHIFT
+            | (long) age << AGE_SHIFT;
+  }
+
+  /** Returns the data stored for the key, or MISSING: */
+  public long probe(long key){
+    int first = (int) (key & bucketMask) * BUCKET;
+    for (int i = first; i < first + BUCKET; i++){
+      long check = entries.get(i * 2);
+      long data = entries.get(i * 2 + 1);
+      if ((check ^ data) == key && data != MISSING) return data;
+    }
+    return MISSING;
+  }
+
+  /**
+   * Adds visits and wins to the key's entry (creating it, if need be, in place of the least useful entry of its bucket),
+   * and sets its best action if action isn't -1. Returns false if the update was dropped, being contended too often.
+   */
+  public boolean add(long key, int visits, int wins, int action){
+    int first = (int) (key & bucketMask) * BUCKET;
+    for (int attempt = 0; attempt < RETRIES; attempt++){
+      // Find the key's entry, or else the one to replace:
+      int slot = -1, victim = -1;
+      long slotCheck = 0, slotData = 0, victimCheck = 0;
+      long victimScore = Long.MAX_VALUE;
+      for (int i = first; i < first + BUCKET; i++){
+        long check = entries.get(i * 2);
+        long data = entries.get(i * 2 + 1);
+        if (data != MISSING && (check ^ data) == key){
+          slot = i;
+          slotCheck = check;
+          slotData = data;
+          break;
+        }
+        // Empty entries first, then ones from older searches, then ones with fewer visits:
+        long score = data == MISSING ? -1 : (long) (age(data) == age ? 1 : 0) << 32 | visits(data);
+        if (score < victimScore){
+          victim = i;
+          victimScore = score;
+          victimCheck = check;
+        }
+      }
+      long data;
+      if (slot != -1){
+        data = pack(visits(slotData) + (long) visits, wins(slotData) + (long) wins, action != -1 ? action : action(slotData));
+      }
+      else {
+        slot = victim;
+        slotCheck = victimCheck;
+        data = pack(visits, wins, action);
+      }
+      // Claim the entry, leaving it not matching any key until its data is written:
+      if (!entries.compareAndSet(slot * 2, slotCheck, ~slotCheck)) continue;
+      entries.set(slot * 2 + 1, data);
+      entries.set(slot * 2, key ^ data);
+      return true;
+    }
+    return false;
+  }
+
+  /** Empties the table: */
+  public void clear(){
+    for (int i = 0; i < entries.length(); i++) entries.set(i, 0);
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * TurnTables holds, for every Estate on a map, the expected number of turns needed to enter it from
+ * each cell, and the probability of entering it this turn, given the distribution of the dice.
+ *
+ * They come from a Markov chain over the distance to the Estate (from DistanceFields):
+ * a roll of at least the distance enters the Estate, and any smaller roll moves that many steps closer,
+ * so E(0) = 0 and E(d) = 1 + sum over rolls r < d of P(r) * E(d - r).
+ * Characters blocking the way are ignored. The tables are built once and shared, so bots can plan
+ * several turns ahead with lookups rather than rollouts.
+ */
+public final class TurnTables {
+
+  public final MapLayout layout;
+  /** Expected turns and chance of entering this turn, indexed by distance: */
+  private final double[] expectedByDistance;
+  private final double[] chanceByDistance;
+  /** Expected turns to enter each Estate, and the chance of entering it this turn, indexed by estate id then cell: */
+  private final float[][] expected;
+  private final float[][] chance;
+
+  /** Builds the tables for the specified map and dice distribution (probabilities indexed by roll total): */
+  public TurnTables(MapLayout layout, double[] distribution){
+    this.layout = layout;
+    DistanceFields distances = layout.distances();
+
+    // Find the furthest any cell is from an Estate:
+    int max = 0;
+    for (int id = 0; id < layout.estateCount(); id++){
+      for (short steps : distances.field(id)){
+        if (steps != DistanceFields.UNREACHABLE) max = Math.max(max, steps);
+      }
+    }
+
+    // Solve the chain by increasing distance, since E(d) only depends on smaller distances:
+    expectedByDistance = new double[max + 1];
+    chanceByDistance = new double[max + 1];
+    chanceByDistance[0] = 1;
+    double stay = distribution.length > 0 ? distribution[0] : 0; // chance of a roll that can't move
+    for (int d = 1; d <= max; d++){
+      double e = 1;
+      double c = 0;
+      for (int r = 1; r < distribution.length; r++){
+        if (r < d) e += distribution[r] * expectedByDistance[d - r];
+        else c += distribution[r];
+      }
+      expectedByDistance[d] = stay < 1 ? e / (1 - stay) : Double.POSITIVE_INFINITY;
+      chanceByDistance[d] = c;
+    }
+
+    // Expand them into per cell tables:
+    expected = new float[layout.estateCount()][layout.size()];
+    chance = new float[layout.estateCount()][layout.size()];
+    for (int id = 0; id < layout.estateCount(); id++){
+      short[] field = distances.field(id);
+      for (int cell = 0; cell < field.length; cell++){
+        int d = field[cell];
+        expected[id][cell] = d == DistanceFields.UNREACHABLE ? Float.POSITIVE_INFINITY : (float) expectedByDistance[d];
+        chance[id][cell] = d == DistanceFields.UNREACHABLE ? 0 : (float) chanceByDistance[d];
+      }
+    }
+  }
+
+  /** Returns the expected number of turns to enter the Estate with the specified id from the cell. */
+  public float expectedTurns(int cell, int estateId){ return expected[estateId][cell]; }
+
+  /** Returns the probability of entering the Estate with the specified id from the cell this turn. */
+  public float chanceThisTurn(int cell, int estateId){ return chance[estateId][cell]; }
+
+  /** Returns the expected number of turns to travel a distance (infinite if it's unreachable). */
+  public double expectedTurnsForDistance(int distance){
+    if (distance >= expectedByDistance.length) return Double.POSITIVE_INFINITY;
+    return expectedByDistance[distance];
+  }
+
+  /** Returns the probability of travelling a distance this turn. */
+  public double chanceForDistance(int distance){
+    return distance >= chanceByDistance.length ? 0 : chanceByDistance[distance];
+  }
+
+  /**
+   * Returns the expected turns to enter an Estate after leaving another one, using its best unblocked exit:
+   */
+  public double expectedTurnsBetween(int fromId, int toId, GridModel model){
+    return expectedTurnsForDistance(layout.distances().stepsBetween(fromId, toId, model));
+  }
+}
@@ -23,10 +23,12 @@ public class Weapon extends Card {
   private static Image scissors = loadImage("scissors.png");
   private static Image shovel = loadImage("shovel.png");
 
-  /** Constructs a Weapon card with a specified name and initial (just its index in the Name enum): */
-  public Weapon(String name){
-    // Second argument converts name to enum, gets its numerical value and makes it a char:
-    super(name, String.valueOf(Name.valueOf(name).ordinal()).charAt(0));
+  /**
+   * Constructs a Weapon card with a specified name, index among the weapons (which gives its initial),
+   * and id in the deck:
+   */
+  public Weapon(String name, int index, int id){
+    super(name, GameConfig.WEAPON_SYMBOLS.charAt(index), id);
   }
   
   public void drawWeapon(Graphics g, int x, int y, int offset) throws IOException {
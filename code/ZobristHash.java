@@ -0,0 +1,116 @@
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ZobristHash identifies a position of a game by a 64-bit hash: the XOR of a random key for each fact about it.
+ * The facts are where each GameCharacter is (its cell, or its Estate), which Estate each Weapon is in,
+ * whose turn it is, who has made a solve attempt, and which Cards each seat knows aren't in the solution.
+ *
+ * The hash is updated as the game changes rather than recomputed, by toggling the keys of the facts that change
+ * (toggling a fact's key both adds and removes it). The keys come from a fixed seed, so equal positions
+ * hash the same in every game of the same size, e.g. to find repeated positions across replays.
+ * The keys of each size are only made once, and shared by every hash of that size.
+ */
+public final class ZobristHash {
+
+  /** The seed of the keys: */
+  private static final long SEED = 0x5EED_2025_CAFE_F00DL;
+
+  /** The keys of each game size made so far: */
+  private static final Map<Long, Keys> SIZES = new ConcurrentHashMap<>();
+
+  private final int cells, estateCount, cards;
+  private final Keys keys;
+  /** The Cards each seat knows aren't in the solution, as last set (so only the changes are toggled): */
+  private final long[] known;
+  private long hash;
+
+  /** Constructs an empty hash (of no facts) for a game of the specified size: */
+  public ZobristHash(int cells, int estateCount, int cards, int seats){
+    this.cells = cells;
+    this.estateCount = estateCount;
+    this.cards = cards;
+    long size = (long) cells << 24 | estateCount << 16 | cards << 8 | seats;
+    keys = SIZES.computeIfAbsent(size, k -> new Keys(cells, estateCount, cards, seats));
+    known = new long[seats];
+  }
+
+  /**
+   * The keys of a game size:
+   * by card then cell, by card then estate id, by seat, by seat, and by seat then card.
+   */
+  private static final class Keys {
+    final long[] cellKeys;
+    final long[] estateKeys;
+    final long[] turnKeys;
+    final long[] eliminatedKeys;
+    final long[] knownKeys;
+
+    Keys(int cells, int estateCount, int cards, int seats){
+      SplittableRandom random = new SplittableRandom(SEED);
+      cellKeys = keys(random, seats * cells);
+      estateKeys = keys(random, cards * estateCount);
+      turnKeys = keys(random, seats);
+      eliminatedKeys = keys(random, seats);
+      knownKeys = keys(random, seats * cards);
+    }
+
+    private static long[] keys(SplittableRandom random, int count){
+      long[] keys = new long[count];
+      for (int i = 0; i < count; i++) keys[i] = random.nextLong();
+      return keys;
+    }
+  }
+
+  /** Returns the hash of the position: */
+  public long get(){ return hash; }
+
+  /** Toggles a GameCharacter being on the cell: */
+  public void toggleCell(int character, int cell){ hash ^= keys.cellKeys[character * cells + cell]; }
+
+  /** Toggles a Card being in the Estate with the map estate id: */
+  public void toggleEstate(int card, int estateId){ hash ^= keys.estateKeys[card * estateCount + estateId]; }
+
+  /** Toggles it being the seat's turn: */
+  public void toggleTurn(int seat){ hash ^= keys.turnKeys[seat]; }
+
+  /** Toggles the seat having made a solve attempt: */
+  public void toggleEliminated(int seat){ hash ^= keys.eliminatedKeys[seat]; }
+
+  /** Sets the Cards the seat knows aren't in the solution, toggling the keys of those that changed: */
+  public void setKnown(int seat, long mask){
+    for (long b = mask ^ known[seat]; b != 0; b &= b - 1) hash ^= keys.knownKeys[seat * this.cards + Long.numberOfTrailingZeros(b)];
+    known[seat] = mask;
+  }
+
+  /**
+   * Toggles where the Card is on the Board (its cell or Estate, if either). Called before and after the Card moves:
+   */
+  public void toggle(Board board, Card c){
+    GridModel model = board.getModel();
+    if (c.inEstate()) toggleEstate(c.id, model.estateId(c.getEstate()));
+    else if (c instanceof GameCharacter && ((GameCharacter) c).getSquare() != null){
+      Square s = ((GameCharacter) c).getSquare();
+      toggleCell(c.id, model.layout.index(s.row, s.col));
+    }
+  }
+
+  /**
+   * Returns a new hash of the Board's position, worked out from scratch:
+   */
+  public static ZobristHash of(Board board){
+    GridModel model = board.getModel();
+    Player[] players = board.getPlayers();
+    CardRegistry registry = board.getRegistry();
+    ZobristHash z = new ZobristHash(model.layout.size(), model.layout.estateCount(), registry.size(), players.length);
+    for (Card c : registry.all()) z.toggle(board, c);
+    z.toggleTurn(board.getCurrentPlayerIndex());
+    for (int s = 0; s < players.length; s++){
+      if (players[s].solveAttempted()) z.toggleEliminated(s);
+      Deduction d = players[s].getDeduction(board);
+      z.setKnown(s, d.all() & ~d.candidates());
+    }
+    return z;
+  }
+}